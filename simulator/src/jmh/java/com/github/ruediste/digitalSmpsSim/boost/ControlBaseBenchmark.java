@@ -0,0 +1,42 @@
+package com.github.ruediste.digitalSmpsSim.boost;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ruediste.digitalSmpsSim.boost.SimulatorBenchmark.Control;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlBaseBenchmark {
+    private ControlBase<?> control;
+
+    @Setup
+    public void setup() {
+        control = SimulatorBenchmark.createCircuit(Control.COT, false).control;
+        control.fillAdcChannel(0, 12);
+    }
+
+    @Benchmark
+    public double readAdcChannel() {
+        return control.readAdcChannel(0, 4);
+    }
+
+    @Benchmark
+    public double readAdcChannelMapped() {
+        return control.readAdcChannel(0, 4, x -> x * 2);
+    }
+}
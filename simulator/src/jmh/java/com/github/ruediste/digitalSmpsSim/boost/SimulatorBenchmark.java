@@ -0,0 +1,113 @@
+package com.github.ruediste.digitalSmpsSim.boost;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ruediste.digitalSmpsSim.quantity.Unit;
+import com.github.ruediste.digitalSmpsSim.simulation.Plot;
+import com.github.ruediste.digitalSmpsSim.simulation.Simulator;
+
+/**
+ * Simulation of a complete {@link BoostCircuit}. Besides the simulations per
+ * second, the number of simulated steps per second is reported by the
+ * {@link Steps} counter. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark {
+
+    public enum Control {
+        COT,
+        PID,
+        STEP_UP_DOWN,
+    }
+
+    @Param
+    public Control control;
+
+    @Param({ "false", "true" })
+    public boolean withPlots;
+
+    private final Simulator sim = new Simulator();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Steps {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steps = 0;
+        }
+    }
+
+    /**
+     * Create a circuit in steady state, converting 5V to 12V at 10mA
+     */
+    static BoostCircuit createCircuit(Control control, boolean withPlots) {
+        double vIn = 5;
+        double vOut = 12;
+        double iOut = 0.01;
+        var circuit = new BoostCircuit();
+        switch (control) {
+            case COT: {
+                var c = new BoostControlCot(circuit);
+                c.targetVoltage.set(0, vOut);
+                circuit.control = c;
+            }
+                break;
+            case PID: {
+                var c = new BoostControlPID(circuit);
+                c.targetVoltage.set(0, vOut);
+                circuit.control = c;
+            }
+                break;
+            case STEP_UP_DOWN: {
+                var c = new BoostControlStepUpDown(circuit);
+                c.targetVoltage.set(0, vOut);
+                circuit.control = c;
+            }
+                break;
+        }
+        circuit.source.voltage.set(0, vIn);
+        circuit.load.resistance.set(0, vOut / iOut);
+        circuit.outputVoltage.initialize(vOut);
+        circuit.inputVoltage.initialize(vIn);
+        circuit.control.initializeSteadyState();
+
+        if (withPlots)
+            new Plot(circuit, "Benchmark")
+                    .add("Vout", Unit.Volt, circuit.outputVoltage)
+                    .add("IL", Unit.Ampere, circuit.inductorCurrent)
+                    .add("Switch", Unit.Digital, () -> circuit.switchOn.get() ? 1. : 0.);
+        return circuit;
+    }
+
+    @Benchmark
+    public BoostCircuit simulate(Steps steps) {
+        var circuit = createCircuit(control, withPlots);
+        var run = sim.start(circuit, circuit.control.simulationDuration(), withPlots ? circuit.plots : List.of());
+        sim.advance(run, run.finalTime);
+        sim.finish(run);
+        steps.steps += run.getStepCount();
+        return circuit;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.ruediste.digitalSmpsSim.shared;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ruediste.digitalSmpsSim.shared.PwmValuesCalculator.PwmValues;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PwmValuesCalculatorBenchmark {
+    private final PwmValuesCalculator calculator = new PwmValuesCalculator();
+    private double duty;
+
+    @Benchmark
+    public PwmValues calculate() {
+        duty += 0.001;
+        if (duty > 1)
+            duty = 0;
+        return calculator.calculate(100e3, duty);
+    }
+}
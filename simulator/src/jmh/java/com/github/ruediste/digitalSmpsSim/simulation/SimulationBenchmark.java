@@ -0,0 +1,74 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.ruediste.digitalSmpsSim.boost.BoostCircuit;
+
+/**
+ * Micro benchmarks of the building blocks of the simulation loop
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+    private static final int changes = 16;
+    private static final double changePeriod = 1e-3;
+
+    private StepChangingValue<Double> stepChangingValue;
+    private DoubleStepChangingValue doubleStepChangingValue;
+    private double time;
+
+    private Circuit circuit;
+
+    @Setup
+    public void setup() {
+        stepChangingValue = new StepChangingValue<>();
+        doubleStepChangingValue = new DoubleStepChangingValue();
+        for (int i = 0; i < changes; i++) {
+            stepChangingValue.set(i * changePeriod, (double) i);
+            doubleStepChangingValue.set(i * changePeriod, i);
+        }
+        circuit = new BoostCircuit();
+    }
+
+    /**
+     * Advance the time like the simulation does, restarting at zero after the
+     * last change
+     */
+    private double nextTime() {
+        time += 1e-6;
+        if (time > changes * changePeriod)
+            time = 0;
+        return time;
+    }
+
+    @Benchmark
+    public Double stepChangingValueGet() {
+        return stepChangingValue.get(nextTime());
+    }
+
+    @Benchmark
+    public double doubleStepChangingValueGet() {
+        return doubleStepChangingValue.get(nextTime());
+    }
+
+    @Benchmark
+    public Circuit propagateValues() {
+        circuit.propagateValues();
+        return circuit;
+    }
+}
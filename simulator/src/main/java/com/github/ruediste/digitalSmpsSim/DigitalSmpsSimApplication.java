@@ -9,6 +9,11 @@ import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.event.MouseWheelEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,7 +22,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.knowm.xchart.XChartPanel;
 import org.knowm.xchart.XYChart;
@@ -25,106 +29,108 @@ import org.knowm.xchart.XYChartBuilder;
 import org.knowm.xchart.XYSeries;
 import org.knowm.xchart.internal.series.Series.DataType;
 import org.knowm.xchart.style.Styler.LegendPosition;
+import org.knowm.xchart.style.markers.SeriesMarkers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.ruediste.digitalSmpsSim.Simulations.CircuitParameterAxis;
 import com.github.ruediste.digitalSmpsSim.Simulations.CircuitParameterValue;
 import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
+import com.github.ruediste.digitalSmpsSim.simulation.Plot;
+import com.github.ruediste.digitalSmpsSim.simulation.TraceReader;
 
 public class DigitalSmpsSimApplication {
 
 	static Logger log = LoggerFactory.getLogger((DigitalSmpsSimApplication.class));
 	private JPanel plotsPanel;
 	CircuitFilterManager filterManager;
-	private Map<PowerCircuitBase, JPanel> circuitPanels;
+	private Map<PowerCircuitBase, JPanel> circuitPanels = new HashMap<>();
 
+	/**
+	 * Without arguments, run the simulations and show the plots. Otherwise show
+	 * the trace files given as arguments.
+	 */
 	public static void main(String[] args) {
-		new DigitalSmpsSimApplication().main();
+		if (args.length > 0)
+			showTraces(args);
+		else
+			new DigitalSmpsSimApplication().main();
 	}
 
-	public void main() {
-		var simulations = new Simulations();
-		simulations.run();
-
-		circuitPanels = simulations.circuits.stream().collect(Collectors.toMap(c -> c, circuit -> {
+	private static void showTraces(String[] files) {
+		SwingUtilities.invokeLater(() -> {
+			JFrame frame = new JFrame("DIY DC-DC Simulator Traces");
+			frame.setLayout(new BorderLayout());
+			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-			var circuitPanel = new JPanel();
-			circuitPanel.setLayout(new BoxLayout(circuitPanel, BoxLayout.PAGE_AXIS));
-
-			circuitPanel.add(new JLabel(circuit.parameterValues.stream().map(x -> x.axis() + ":" + x.label())
-					.collect(Collectors.joining(" ")) + " totalCost: %.3e".formatted(circuit.costCalculator.totalCost)
-					+ " "
-					+ circuit.control.parameterInfo()));
-
-			for (var plot : circuit.plots) {
-				// Create Chart
-				final XYChart chart = new XYChartBuilder().height(400).title(plot.title)
-						.xAxisTitle("Time [" + plot.timePrefix.symbol + "s]")
-						.build();
-				// Customize Chart
-				chart.getStyler().setLegendPosition(LegendPosition.InsideNE);
-				chart.setCustomXAxisTickLabelsFormatter(t -> plot.timePrefix.toString(t, "s"));
-				// chart.getStyler().setDefaultSeriesRenderStyle(XYSeriesRenderStyle.Area);
-
-				for (var axis : plot.axes) {
-					chart.setYAxisGroupTitle(axis.index, axis.unitSymbol);
-				}
+			var panel = new JPanel();
+			panel.setLayout(new BoxLayout(panel, BoxLayout.PAGE_AXIS));
+			for (var file : files) {
+				var trace = new TraceReader(Path.of(file));
+				if (trace.size() == 0)
+					panel.add(new JLabel(file + ": empty trace"));
+				else
+					panel.add(new TraceChart(trace, file).panel);
+			}
+			frame.add(new JScrollPane(panel), BorderLayout.CENTER);
+			frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
+			frame.setVisible(true);
+		});
+	}
 
-				for (int i = 0; i < plot.series.size(); i++) {
-					var s = plot.series.get(i);
-					double[] xData = new double[plot.values.size()];
-					double[] yData = new double[plot.values.size()];
-					for (int p = 0; p < plot.values.size(); p++) {
-						var values = plot.values.get(p);
-						xData[p] = values.time;
-						yData[p] = values.values.get(i);
-						if (Double.isInfinite(yData[p])) {
-							yData[p] = 0;
-						}
-					}
-					var series = new XYSeries(s.name, xData, yData, null, DataType.Number);
-					series.setYAxisGroup(s.yAxisIndex);
-					chart.getSeriesMap().put(s.name, series);
-				}
+	public void main() {
+		// show the window right away and add the circuits as their simulations
+		// complete
+		SwingUtilities.invokeLater(() -> {
+			// Create and set up the window.
+			JFrame frame = new JFrame("DIY DC-DC Simulator");
+			frame.setLayout(new BorderLayout());
+			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-				circuitPanel.add(new XChartPanel<XYChart>(chart));
-			}
-			return circuitPanel;
-		}));
+			plotsPanel = new JPanel();
+			plotsPanel.setLayout(new BoxLayout(plotsPanel, BoxLayout.PAGE_AXIS));
 
-		// Schedule a job for the event-dispatching thread:
-		// creating and showing this application's GUI.
-		javax.swing.SwingUtilities.invokeLater(new Runnable() {
+			// scroll pane
+			JScrollPane scrollPane = new JScrollPane(plotsPanel);
+			scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+			scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+			scrollPane.getVerticalScrollBar().setUnitIncrement(50);
+			scrollPane.getVerticalScrollBar().setBlockIncrement(500);
+			frame.add(scrollPane, BorderLayout.CENTER);
 
-			@Override
-			public void run() {
+			filterManager = new CircuitFilterManager();
+			fillPlotsPanel();
 
-				// Create and set up the window.
-				JFrame frame = new JFrame("DIY DC-DC Simulator");
-				frame.setLayout(new BorderLayout());
-				frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+			// Display the window.
+			frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
+			// frame.pack();
+			frame.setVisible(true);
+		});
 
-				plotsPanel = new JPanel();
-				plotsPanel.setLayout(new BoxLayout(plotsPanel, BoxLayout.PAGE_AXIS));
+		var simulations = new Simulations();
+		// the window is created by the first event, so it exists when the circuits
+		// are added
+		simulations.circuitCompleted = circuit -> SwingUtilities.invokeLater(() -> {
+			circuitPanels.put(circuit, createCircuitPanel(circuit));
+			filterManager.add(circuit);
+			fillPlotsPanel();
+		});
+		simulations.run();
+	}
 
-				// scroll pane
-				JScrollPane scrollPane = new JScrollPane(plotsPanel);
-				scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-				scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-				scrollPane.getVerticalScrollBar().setUnitIncrement(50);
-				scrollPane.getVerticalScrollBar().setBlockIncrement(500);
-				frame.add(scrollPane, BorderLayout.CENTER);
+	private JPanel createCircuitPanel(PowerCircuitBase circuit) {
+		var circuitPanel = new JPanel();
+		circuitPanel.setLayout(new BoxLayout(circuitPanel, BoxLayout.PAGE_AXIS));
 
-				filterManager = new CircuitFilterManager(simulations.circuits);
-				fillPlotsPanel();
+		circuitPanel.add(new JLabel(circuit.parameterValues.stream().map(x -> x.axis() + ":" + x.label())
+				.collect(Collectors.joining(" ")) + " totalCost: %.3e".formatted(circuit.costCalculator.totalCost)
+				+ " "
+				+ circuit.control.parameterInfo()));
 
-				// Display the window.
-				frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
-				// frame.pack();
-				frame.setVisible(true);
-			}
-		});
+		for (var plot : circuit.plots) {
+			circuitPanel.add(new PlotChart(plot).panel);
+		}
+		return circuitPanel;
 	}
 
 	private void fillPlotsPanel() {
@@ -171,24 +177,205 @@ public class DigitalSmpsSimApplication {
 		plotsPanel.getParent().revalidate();
 	}
 
+	/**
+	 * Chart with a visible time range. Turning the mouse wheel while holding down
+	 * control zooms around the mouse position.
+	 */
+	private static abstract class ZoomableChart {
+		protected final XYChart chart;
+		final XChartPanel<XYChart> panel;
+		private final double start;
+		private final double end;
+		protected double from;
+		protected double to;
+
+		ZoomableChart(XYChart chart, double start, double end) {
+			this.chart = chart;
+			this.start = start;
+			this.end = end;
+			from = start;
+			to = end;
+			chart.getStyler().setLegendPosition(LegendPosition.InsideNE);
+			panel = new XChartPanel<XYChart>(chart);
+			panel.addMouseWheelListener(this::mouseWheelMoved);
+		}
+
+		private void mouseWheelMoved(MouseWheelEvent e) {
+			if (!e.isControlDown()) {
+				// keep scrolling the surrounding pane
+				var parent = panel.getParent();
+				parent.dispatchEvent(SwingUtilities.convertMouseEvent(panel, e, parent));
+				return;
+			}
+			double fraction = Math.min(1, Math.max(0, e.getX() / (double) panel.getWidth()));
+			double center = from + fraction * (to - from);
+			double width = Math.min(end - start, (to - from) * Math.pow(1.25, e.getPreciseWheelRotation()));
+			from = Math.max(start, center - fraction * width);
+			to = Math.min(end, from + width);
+			from = to - width;
+			update();
+			panel.repaint();
+		}
+
+		/**
+		 * Show the points of the visible range
+		 */
+		protected void update() {
+			chart.getStyler().setXAxisMin(from);
+			chart.getStyler().setXAxisMax(to);
+		}
+	}
+
+	/**
+	 * Chart of a plot. The points are taken from the level of the plot pyramid
+	 * matching the visible range.
+	 */
+	private static class PlotChart extends ZoomableChart {
+		private final Plot plot;
+
+		PlotChart(Plot plot) {
+			super(new XYChartBuilder().height(400).title(plot.title)
+					.xAxisTitle("Time [" + plot.timePrefix.symbol + "s]")
+					.build(), plot.start, plot.end);
+			this.plot = plot;
+
+			// Customize Chart
+			chart.setCustomXAxisTickLabelsFormatter(t -> plot.timePrefix.toString(t, "s"));
+			// chart.getStyler().setDefaultSeriesRenderStyle(XYSeriesRenderStyle.Area);
+
+			for (var axis : plot.axes) {
+				chart.setYAxisGroupTitle(axis.index, axis.unitSymbol);
+			}
+
+			var colors = chart.getStyler().getSeriesColors();
+			for (int i = 0; i < plot.series.size(); i++) {
+				var s = plot.series.get(i);
+				addSeries(chart, s.name, s.yAxisIndex, colors[i % colors.length]);
+			}
+			update();
+		}
+
+		@Override
+		protected void update() {
+			// include the neighbours such that the lines extend to the border of the
+			// chart
+			var level = plot.level(from, to);
+			int first = Math.max(0, level.indexOf(from) - 1);
+			int last = Math.min(level.size, level.indexOf(to) + 1);
+			if (last - first < 1)
+				return;
+			var times = Arrays.copyOfRange(level.times, first, last);
+			for (int i = 0; i < plot.series.size(); i++) {
+				var s = plot.series.get(i);
+				chart.updateXYSeries(s.name, times, Arrays.copyOfRange(level.mean[i], first, last), null);
+				chart.updateXYSeries(s.name + " min", times, Arrays.copyOfRange(level.min[i], first, last), null);
+				chart.updateXYSeries(s.name + " max", times, Arrays.copyOfRange(level.max[i], first, last), null);
+			}
+			super.update();
+		}
+	}
+
+	/**
+	 * Chart of a trace file. The records of the visible range are aggregated into
+	 * a bounded number of points.
+	 */
+	private static class TraceChart extends ZoomableChart {
+		private static final int points = 1000;
+		private final TraceReader trace;
+
+		TraceChart(TraceReader trace, String title) {
+			super(new XYChartBuilder().height(600).title(title).xAxisTitle("Time [s]").build(), trace.time(0),
+					trace.time(trace.size() - 1));
+			this.trace = trace;
+			var colors = chart.getStyler().getSeriesColors();
+			for (int i = 0; i < trace.names().size(); i++) {
+				var name = trace.names().get(i);
+				chart.setYAxisGroupTitle(i, name);
+				addSeries(chart, name, i, colors[i % colors.length]);
+			}
+			update();
+		}
+
+		@Override
+		protected void update() {
+			long first = Math.max(0, trace.indexOf(from) - 1);
+			long last = Math.min(trace.size(), trace.indexOf(to) + 1);
+			long count = last - first;
+			if (count < 1)
+				return;
+			int bucketCount = (int) Math.min(count, points);
+			var times = new double[bucketCount];
+			for (int i = 0; i < trace.names().size(); i++) {
+				var mean = new double[bucketCount];
+				var min = new double[bucketCount];
+				var max = new double[bucketCount];
+				for (int b = 0; b < bucketCount; b++) {
+					long bucketStart = first + count * b / bucketCount;
+					long bucketEnd = first + count * (b + 1) / bucketCount;
+					double sum = 0;
+					double duration = 0;
+					min[b] = Double.POSITIVE_INFINITY;
+					max[b] = Double.NEGATIVE_INFINITY;
+					for (long r = bucketStart; r < bucketEnd; r++) {
+						double value = trace.value(r, i);
+						double stepDuration = r > 0 ? trace.time(r) - trace.time(r - 1) : 0;
+						sum += value * stepDuration;
+						duration += stepDuration;
+						min[b] = Math.min(min[b], value);
+						max[b] = Math.max(max[b], value);
+					}
+					times[b] = trace.time(bucketEnd - 1);
+					mean[b] = duration > 0 ? sum / duration : trace.value(bucketEnd - 1, i);
+				}
+				var name = trace.names().get(i);
+				chart.updateXYSeries(name, times, mean, null);
+				chart.updateXYSeries(name + " min", times, min, null);
+				chart.updateXYSeries(name + " max", times, max, null);
+			}
+			super.update();
+		}
+	}
+
+	/**
+	 * Add a series, with the min/max envelope drawn behind it
+	 */
+	private static void addSeries(XYChart chart, String name, int yAxisGroup, Color color) {
+		var empty = new double[] { 0 };
+		var envelopeColor = new Color(color.getRed(), color.getGreen(), color.getBlue(), 80);
+		for (var envelopeName : List.of(name + " min", name + " max")) {
+			var envelope = new XYSeries(envelopeName, empty, empty, null, DataType.Number);
+			envelope.setYAxisGroup(yAxisGroup);
+			envelope.setLineColor(envelopeColor);
+			envelope.setLineWidth(1);
+			envelope.setMarker(SeriesMarkers.NONE);
+			envelope.setShowInLegend(false);
+			chart.getSeriesMap().put(envelopeName, envelope);
+		}
+		var series = new XYSeries(name, empty, empty, null, DataType.Number);
+		series.setYAxisGroup(yAxisGroup);
+		series.setLineColor(color);
+		series.setMarkerColor(color);
+		chart.getSeriesMap().put(name, series);
+	}
+
 	private static class CircuitFilterManager {
-		private List<PowerCircuitBase> circuits;
-		public List<CircuitParameterAxis> axes;
+		private List<PowerCircuitBase> circuits = new ArrayList<>();
+		public List<CircuitParameterAxis> axes = List.of();
 		Map<CircuitParameterAxis, Set<CircuitParameterValue>> allValuesPerAxis = new HashMap<>();
 		Map<CircuitParameterAxis, Set<CircuitParameterValue>> selectedValuesPerAxis = new HashMap<>();
 		public boolean sortByTotalCost;
 
-		public CircuitFilterManager(List<PowerCircuitBase> circuits) {
-			this.circuits = circuits;
-			axes = allParameterValues().map(v -> v.axis())
-					.distinct().sorted().toList();
-			allParameterValues()
-					.forEach(v -> allValuesPerAxis.computeIfAbsent(v.axis(), x -> new LinkedHashSet<>()).add(v));
-			allValuesPerAxis.forEach((axis, values) -> selectedValuesPerAxis.put(axis, new HashSet<>(values)));
-		}
-
-		private Stream<CircuitParameterValue> allParameterValues() {
-			return circuits.stream().flatMap(c -> c.parameterValues.stream());
+		/**
+		 * Add a circuit. Parameter values which have not been seen before are
+		 * selected.
+		 */
+		public void add(PowerCircuitBase circuit) {
+			circuits.add(circuit);
+			for (var v : circuit.parameterValues) {
+				if (allValuesPerAxis.computeIfAbsent(v.axis(), x -> new LinkedHashSet<>()).add(v))
+					selectedValuesPerAxis.computeIfAbsent(v.axis(), x -> new HashSet<>()).add(v);
+			}
+			axes = allValuesPerAxis.keySet().stream().sorted().toList();
 		}
 
 		public List<PowerCircuitBase> filteredCircuits() {
@@ -2,6 +2,7 @@ package com.github.ruediste.digitalSmpsSim;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.slf4j.Logger;
@@ -10,18 +11,67 @@ import org.slf4j.LoggerFactory;
 import com.github.ruediste.digitalSmpsSim.boost.BoostCircuit;
 import com.github.ruediste.digitalSmpsSim.boost.BoostControlCot;
 import com.github.ruediste.digitalSmpsSim.boost.BoostControlCot.Mode;
+import com.github.ruediste.digitalSmpsSim.optimization.EvaluationCache;
+import com.github.ruediste.digitalSmpsSim.optimization.FairExecutor;
+import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
+import com.github.ruediste.digitalSmpsSim.optimization.ScenarioSource;
 import com.github.ruediste.digitalSmpsSim.quantity.SiPrefix;
 import com.github.ruediste.digitalSmpsSim.quantity.Unit;
 import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
+import com.github.ruediste.digitalSmpsSim.simulation.NoiseSource;
 import com.github.ruediste.digitalSmpsSim.simulation.Plot;
 import com.github.ruediste.digitalSmpsSim.simulation.Simulator;
+import com.github.ruediste.digitalSmpsSim.simulation.SweepExecutor;
 
-public class Simulations {
+public class Simulations implements ScenarioSource {
 
     Logger log = LoggerFactory.getLogger(Simulations.class);
 
     List<PowerCircuitBase> circuits = new ArrayList<>();
 
+    /**
+     * Collect and log statistics about the steps of the shown simulations
+     */
+    boolean collectStatistics = false;
+
+    /**
+     * Number of worker processes used by the optimization of all scenarios. If
+     * zero, the simulations run in this JVM.
+     */
+    int optimizationWorkers = 0;
+
+    /**
+     * Skip the steady state periods before the events during the optimizations,
+     * see {@link Optimizer#skipSteadyState}
+     */
+    boolean optimizationSkipsSteadyState = false;
+
+    /**
+     * End the simulations of the optimizations once the circuit is in steady
+     * state, see {@link Optimizer#stopAtSteadyState}
+     */
+    boolean optimizationStopsAtSteadyState = false;
+
+    /**
+     * Maximum number of fork groups simulated or waiting for a thread at the same
+     * time
+     */
+    int maxCircuitsInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of optimizations running at the same time in the
+     * {@link Variant#OPTIMIZE_INDIVIDUAL} variant. They share a single pool of
+     * threads.
+     */
+    int concurrentOptimizations = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Invoked with each circuit as soon as its simulation is completed, possibly
+     * from multiple threads concurrently
+     */
+    Consumer<PowerCircuitBase> circuitCompleted = circuit -> {
+    };
+
     public enum CircuitParameterAxis {
         EVENT,
         V_OUT,
@@ -51,60 +101,101 @@ public class Simulations {
 
     public void run() {
         var sim = new Simulator();
+        sim.collectStatistics = collectStatistics;
 
         var circuitSuppliers = createCircuits();
         switch (Variant.OPTIMIZE_ALL) {
             case MANUAL: {
-                var first = true;
-                for (var circuitSupplier : circuitSuppliers) {
-                    try {
-                        var circuit = circuitSupplier.get();
-                        if (first) {
-                            log.info(circuit.control.parameterInfo());
-                            first = false;
-                        }
-                        sim.simulate(circuit, circuit.control.simulationDuration(), circuit.plots);
-                        this.circuits.add(circuit);
-                    } catch (Exception e) {
-                        log.error("Error in simulation", e);
-                    }
-                }
+                var circuits = circuitSuppliers.stream().map(x -> x.get()).toList();
+                log.info(circuits.get(0).control.parameterInfo());
+                sweep(sim, circuits);
             }
                 break;
             case OPTIMIZE_INDIVIDUAL:
-                for (var circuitSupplier : circuitSuppliers) {
-                    try {
-                        var circuit = circuitSupplier.get();
-                        var parameterSetter = circuit.control.optimize(List.of(circuitSupplier));
-                        parameterSetter.accept(circuit);
-                        sim.simulate(circuit, circuit.control.simulationDuration(), circuit.plots);
-                        this.circuits.add(circuit);
-                    } catch (Exception e) {
-                        log.error("Error in simulation", e);
-                    }
-                }
+                optimizeIndividually(sim, circuitSuppliers);
                 break;
             case OPTIMIZE_ALL: {
-                var parameterSetter = circuitSuppliers.get(0).get().control.optimize(circuitSuppliers);
-                boolean first = true;
-                for (var circuitSupplier : circuitSuppliers) {
-                    var circuit = circuitSupplier.get();
-                    parameterSetter.accept(circuit);
-                    if (first) {
-                        first = false;
-                        log.info(circuit.control.parameterInfo());
-                    }
-                    sim.simulate(circuit, circuit.control.simulationDuration(), circuit.plots);
-                    this.circuits.add(circuit);
-                }
+                var optimizer = new Optimizer();
+                optimizer.workers = optimizationWorkers;
+                optimizer.scenarioSource = Simulations.class;
+                optimizer.skipSteadyState = optimizationSkipsSteadyState;
+                optimizer.stopAtSteadyState = optimizationStopsAtSteadyState;
+                var parameterSetter = circuitSuppliers.get(0).get().control.optimize(optimizer, circuitSuppliers);
+                var circuits = circuitSuppliers.stream().map(x -> x.get()).toList();
+                circuits.forEach(parameterSetter);
+                log.info(circuits.get(0).control.parameterInfo());
+                sweep(sim, circuits);
             }
                 break;
             default:
                 break;
 
         }
+        if (collectStatistics)
+            log.info("Simulation statistics:\n{}", sim.statistics);
+    }
+
+    /**
+     * Simulate the fork groups of the circuits in parallel, passing each circuit
+     * to {@link #completed} as soon as its group is done
+     */
+    private void sweep(Simulator sim, List<BoostCircuit> circuits) {
+        var executor = new SweepExecutor();
+        executor.maxInFlight = maxCircuitsInFlight;
+        executor.run(sim.forkGroups(circuits).stream().<Supplier<List<BoostCircuit>>>map(group -> () -> {
+            try {
+                sim.simulateGroup(group, c -> c.control.simulationDuration(), true);
+                return group;
+            } catch (Exception e) {
+                log.error("Error in simulation", e);
+                return List.of();
+            }
+        }).toList(), group -> group.forEach(this::completed));
     }
 
+    /**
+     * Optimize each scenario on its own. The optimizations run concurrently and
+     * share the threads of a {@link FairExecutor} and the evaluation cache.
+     */
+    private void optimizeIndividually(Simulator sim, List<Supplier<BoostCircuit>> circuitSuppliers) {
+        var settings = new Optimizer();
+        try (var shared = new FairExecutor(settings.threads);
+                var cache = settings.cacheFile == null ? null
+                        : new EvaluationCache(settings.cacheFile, settings.cacheSize)) {
+            var executor = new SweepExecutor();
+            executor.parallelism = concurrentOptimizations;
+            executor.maxInFlight = concurrentOptimizations;
+            executor.run(circuitSuppliers.stream().<Supplier<PowerCircuitBase>>map(circuitSupplier -> () -> {
+                try (var lane = shared.newLane()) {
+                    var optimizer = new Optimizer();
+                    optimizer.executor = lane;
+                    optimizer.sharedCache = cache;
+                    optimizer.skipSteadyState = optimizationSkipsSteadyState;
+                    optimizer.stopAtSteadyState = optimizationStopsAtSteadyState;
+                    var circuit = circuitSupplier.get();
+                    var parameterSetter = circuit.control.optimize(optimizer, List.of(circuitSupplier));
+                    parameterSetter.accept(circuit);
+                    sim.simulate(circuit, circuit.control.simulationDuration(), circuit.plots);
+                    return circuit;
+                } catch (Exception e) {
+                    log.error("Error in simulation", e);
+                    return null;
+                }
+            }).toList(), circuit -> {
+                if (circuit != null)
+                    completed(circuit);
+            });
+        }
+    }
+
+    private void completed(PowerCircuitBase circuit) {
+        synchronized (circuits) {
+            circuits.add(circuit);
+        }
+        circuitCompleted.accept(circuit);
+    }
+
+    @Override
     public List<Supplier<BoostCircuit>> createCircuits() {
         List<Supplier<BoostCircuit>> result = new ArrayList<>();
         // var design = new BoostDesign();
@@ -146,10 +237,17 @@ public class Simulations {
                             circuit.outputVoltage.initialize(vOut);
                             circuit.inputVoltage.initialize(vIn);
                             control.targetVoltage.set(0, vOut);
+                            // same noise for all circuits sharing the fork key
+                            control.noise = new NoiseSource(List.of(vOut, iOut).hashCode());
 
                             control.initializeSteadyState();
 
                             double eventTime = circuit.control.eventTime();
+                            if (event != Event.POWER_ON) {
+                                // the circuits only differ after the event
+                                circuit.forkKey = List.of(vOut, iOut);
+                                circuit.forkTime = eventTime;
+                            }
 
                             new Plot(circuit, vOut + " - " + iOut)
                                     .add("Vout", Unit.Volt, circuit.outputVoltage)
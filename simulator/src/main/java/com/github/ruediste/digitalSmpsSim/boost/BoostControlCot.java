@@ -1,15 +1,13 @@
 package com.github.ruediste.digitalSmpsSim.boost;
 
 import java.util.List;
-import java.util.Random;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.DoubleSupplier;
 
 import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
-import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
 import com.github.ruediste.digitalSmpsSim.shared.PwmValuesCalculator;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleStepChangingValue;
 import com.github.ruediste.digitalSmpsSim.simulation.ExponentialMovingStatistic;
-import com.github.ruediste.digitalSmpsSim.simulation.StepChangingValue;
 
 public class BoostControlCot extends ControlBase<BoostCircuit> {
 
@@ -17,7 +15,7 @@ public class BoostControlCot extends ControlBase<BoostCircuit> {
         super(circuit);
     }
 
-    public StepChangingValue<Double> targetVoltage = new StepChangingValue<>();
+    public DoubleStepChangingValue targetVoltage = new DoubleStepChangingValue();
 
     public double kP = 7.5e-05;
     public double kI = 7.8e-05;
@@ -31,8 +29,6 @@ public class BoostControlCot extends ControlBase<BoostCircuit> {
     public double integral;
     public double frequency;
 
-    private Random random = new Random(0);
-
     boolean firstRun = true;
 
     @Override
@@ -85,10 +81,10 @@ public class BoostControlCot extends ControlBase<BoostCircuit> {
 
     private void control(double instant) {
 
-        int vOutAdc = (int) readAdcChannel(0, 1, x -> random.nextGaussian(voltageToAdc(x), 4.48));
+        int vOutAdc = (int) readAdcChannel(0, adcAveraging, this::voltageToAdc, 4.48);
         vOutAdcStats.add(vOutAdc);
         double vOut = adcToVoltage(vOutAdc);
-        int vInAdc = (int) readAdcChannel(1, 1, x -> random.nextGaussian(voltageToAdc(x), 4.48));
+        int vInAdc = (int) readAdcChannel(1, adcAveraging, this::voltageToAdc, 4.48);
         double vIn = adcToVoltage(vInAdc);
         double cotLimitTime = calculateCotLimitTime();
 
@@ -178,17 +174,54 @@ public class BoostControlCot extends ControlBase<BoostCircuit> {
         lastError = error;
     }
 
-    public <T extends PowerCircuitBase> Consumer<T> optimize(List<Supplier<T>> circuitSuppliers) {
-        var optimizer = new Optimizer();
-        return optimizer.optimize(
-                List.of(
-                        new Optimizer.OptimizationParameter<BoostControlCot>("kP", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kP = Math.exp(v)),
-                        new Optimizer.OptimizationParameter<BoostControlCot>("kI", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kI = Math.exp(v)),
-                        new Optimizer.OptimizationParameter<BoostControlCot>("kD", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kD = Math.exp(v))),
-                circuitSuppliers);
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        super.saveState(out);
+        out.writeDouble(integral);
+        out.writeDouble(frequency);
+        out.writeObject(mode);
+        out.writeDouble(lastError);
+        out.writeDouble(pwmEnabledTime);
+        out.writeDouble(underFrequencyCycles);
+        out.writeInt(error);
+        out.writeDouble(diff);
+        out.writeDouble(minTime);
+        out.writeDouble(vOutAdcStats.average);
+        out.writeDouble(vOutAdcStats.variance);
+        out.writeBoolean(firstRun);
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        super.restoreState(in, instant);
+        integral = in.readDouble();
+        frequency = in.readDouble();
+        mode = in.readObject();
+        lastError = in.readDouble();
+        pwmEnabledTime = in.readDouble();
+        underFrequencyCycles = in.readDouble();
+        error = in.readInt();
+        diff = in.readDouble();
+        minTime = in.readDouble();
+        vOutAdcStats.average = in.readDouble();
+        vOutAdcStats.variance = in.readDouble();
+        firstRun = in.readBoolean();
+    }
+
+    @Override
+    public List<Optimizer.OptimizationParameter<BoostControlCot>> optimizationParameters() {
+        return List.of(
+                new Optimizer.OptimizationParameter<BoostControlCot>("kP", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kP = Math.exp(v)),
+                new Optimizer.OptimizationParameter<BoostControlCot>("kI", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kI = Math.exp(v)),
+                new Optimizer.OptimizationParameter<BoostControlCot>("kD", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kD = Math.exp(v)));
+    }
+
+    @Override
+    public double stationaryFrom() {
+        return targetVoltage.lastChangeTime();
     }
 
     @Override
@@ -201,6 +234,12 @@ public class BoostControlCot extends ControlBase<BoostCircuit> {
         return measuredVoltage;
     }
 
+    @Override
+    public List<DoubleSupplier> steadyStateValues() {
+        return List.of(() -> integral, () -> frequency, () -> mode == Mode.CYCLE_SKIPPING ? 0 : 1, () -> error,
+                () -> vOutAdcStats.average);
+    }
+
     @Override
     public String parameterInfo() {
         return String.format("  kP: %.3e   kI: %.3e   kD: %.3e", kP, kI, kD);
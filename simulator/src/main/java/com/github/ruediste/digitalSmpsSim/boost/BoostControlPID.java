@@ -1,14 +1,12 @@
 package com.github.ruediste.digitalSmpsSim.boost;
 
 import java.util.List;
-import java.util.Random;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.DoubleSupplier;
 
 import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
-import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
 import com.github.ruediste.digitalSmpsSim.shared.PwmValuesCalculator;
-import com.github.ruediste.digitalSmpsSim.simulation.StepChangingValue;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleStepChangingValue;
 
 public class BoostControlPID extends ControlBase<BoostCircuit> {
 
@@ -16,7 +14,7 @@ public class BoostControlPID extends ControlBase<BoostCircuit> {
         super(circuit);
     }
 
-    public StepChangingValue<Double> targetVoltage = new StepChangingValue<>();
+    public DoubleStepChangingValue targetVoltage = new DoubleStepChangingValue();
 
     public double kP = 3.778e-3;
     public double kI = 1.431e-4;
@@ -34,8 +32,6 @@ public class BoostControlPID extends ControlBase<BoostCircuit> {
 
     public int integral;
 
-    private Random random = new Random(0);
-
     // ChebyshevI vOutFilter = new ChebyshevI();
     // ChebyshevI vOutFilterSlow = new ChebyshevI();
 
@@ -75,7 +71,7 @@ public class BoostControlPID extends ControlBase<BoostCircuit> {
 
     private void control(double instant) {
 
-        int adc = (int) readAdcChannel(0, 1, x -> random.nextGaussian(voltageToAdc(x), 4.48));
+        int adc = (int) readAdcChannel(0, adcAveraging, this::voltageToAdc, 4.48);
 
         int error = voltageToAdc(targetVoltage.get(instant)) - adc;
         if (kI != 0) {
@@ -99,19 +95,38 @@ public class BoostControlPID extends ControlBase<BoostCircuit> {
         pwmChannel.compare = (long) (duty * pwmTimer.reload);
     }
 
-    public <T extends PowerCircuitBase> Consumer<T> optimize(List<Supplier<T>> circuitSuppliers) {
-        var optimizer = new Optimizer();
-        return optimizer.optimize(
-                List.of(
-                        new Optimizer.OptimizationParameter<BoostControlPID>("kP", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kP = Math.exp(v)),
-                        new Optimizer.OptimizationParameter<BoostControlPID>("kI", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kI = Math.exp(v)),
-                        new Optimizer.OptimizationParameter<BoostControlPID>("kD", Math.log(kD), 2, -15, 10,
-                                (c, v) -> c.kD = Math.exp(v))
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        super.saveState(out);
+        out.writeDouble(duty);
+        out.writeInt(integral);
+        out.writeInt(lastError);
+        out.writeBoolean(firstRun);
+    }
 
-                ),
-                circuitSuppliers);
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        super.restoreState(in, instant);
+        duty = in.readDouble();
+        integral = in.readInt();
+        lastError = in.readInt();
+        firstRun = in.readBoolean();
+    }
+
+    @Override
+    public List<Optimizer.OptimizationParameter<BoostControlPID>> optimizationParameters() {
+        return List.of(
+                new Optimizer.OptimizationParameter<BoostControlPID>("kP", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kP = Math.exp(v)),
+                new Optimizer.OptimizationParameter<BoostControlPID>("kI", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kI = Math.exp(v)),
+                new Optimizer.OptimizationParameter<BoostControlPID>("kD", Math.log(kD), 2, -15, 10,
+                        (c, v) -> c.kD = Math.exp(v)));
+    }
+
+    @Override
+    public double stationaryFrom() {
+        return targetVoltage.lastChangeTime();
     }
 
     @Override
@@ -125,6 +140,11 @@ public class BoostControlPID extends ControlBase<BoostCircuit> {
         return measuredVoltage;
     }
 
+    @Override
+    public List<DoubleSupplier> steadyStateValues() {
+        return List.of(() -> integral, () -> duty);
+    }
+
     @Override
     public String parameterInfo() {
         return String.format("  kP: %.3e   kI: %.3e   kD: %.3e", kP, kI, kD);
@@ -1,17 +1,16 @@
 package com.github.ruediste.digitalSmpsSim.boost;
 
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.DoubleSupplier;
 
 import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
-import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
 import com.github.ruediste.digitalSmpsSim.shared.PwmValuesCalculator;
-import com.github.ruediste.digitalSmpsSim.simulation.StepChangingValue;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleStepChangingValue;
 
 public class BoostControlStepUpDown extends ControlBase<BoostCircuit> {
 
-    public StepChangingValue<Double> targetVoltage = new StepChangingValue<>();
+    public DoubleStepChangingValue targetVoltage = new DoubleStepChangingValue();
     public double dutyChangeStep = 0.01;
     public double maxDuty = 0.6;
     public double switchingFrequency = 100e3;
@@ -39,7 +38,7 @@ public class BoostControlStepUpDown extends ControlBase<BoostCircuit> {
         }
 
         controlTimer.onReload = (instant) -> {
-            double measuredOutputVoltage = readAdcChannel(0, 1);
+            double measuredOutputVoltage = readAdcChannel(0, adcAveraging);
             if (measuredOutputVoltage < targetVoltage.get(instant))
                 duty += dutyChangeStep;
             else
@@ -54,6 +53,18 @@ public class BoostControlStepUpDown extends ControlBase<BoostCircuit> {
         };
     }
 
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        super.saveState(out);
+        out.writeDouble(duty);
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        super.restoreState(in, instant);
+        duty = in.readDouble();
+    }
+
     public void initializeSteadyState() {
         var calc = new BoostDutyCalculator();
         calc.inductance = circuit.power.inductance;
@@ -73,6 +84,11 @@ public class BoostControlStepUpDown extends ControlBase<BoostCircuit> {
         return 200 / switchingFrequency;
     }
 
+    @Override
+    public double stationaryFrom() {
+        return targetVoltage.lastChangeTime();
+    }
+
     @Override
     public double targetValue(double instant) {
         return targetVoltage.get(instant);
@@ -83,20 +99,22 @@ public class BoostControlStepUpDown extends ControlBase<BoostCircuit> {
         return circuit.outputVoltage.get();
     }
 
+    @Override
+    public List<DoubleSupplier> steadyStateValues() {
+        return List.of(() -> duty);
+    }
+
     @Override
     public String parameterInfo() {
         return "Step: " + dutyChangeStep;
     }
 
     @Override
-    public <T extends PowerCircuitBase> Consumer<T> optimize(List<Supplier<T>> circuitSuppliers) {
-        var optimizer = new Optimizer();
-        return optimizer.optimize(
-                List.of(
-                        new Optimizer.OptimizationParameter<BoostControlStepUpDown>("step", Math.log(dutyChangeStep), 5,
-                                -10, 10,
-                                (c, v) -> c.dutyChangeStep = Math.exp(v))),
-                circuitSuppliers);
+    public List<Optimizer.OptimizationParameter<BoostControlStepUpDown>> optimizationParameters() {
+        return List.of(
+                new Optimizer.OptimizationParameter<BoostControlStepUpDown>("step", Math.log(dutyChangeStep), 5,
+                        -10, 10,
+                        (c, v) -> c.dutyChangeStep = Math.exp(v)));
     }
 
     @Override
@@ -2,7 +2,20 @@ package com.github.ruediste.digitalSmpsSim.boost;
 
 import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
 
+/**
+ * Power stage of the boost converter. Between two events, the stage is a
+ * linear network and is integrated exactly, thus the result does not depend on
+ * the step size.
+ *
+ * <p>
+ * The load is modeled as the resistance of the {@link PowerCircuitBase#load},
+ * which is constant during a step. With the load conductance G and the
+ * capacitor ESR R, the output voltage is
+ * {@code vOut = k * (vC + R * iIn)} with {@code k = 1 / (1 + R * G)}, where
+ * iIn is the current flowing from the inductor into the output.
+ */
 public class BoostPower extends CircuitElement {
 
     private PowerCircuitBase circuit;
@@ -20,63 +33,245 @@ public class BoostPower extends CircuitElement {
     public double capacitorVoltage;
     public double capacitorESR = 0.1;
 
+    private double zeroCrossingInstant = Double.POSITIVE_INFINITY;
+
+    /**
+     * The inductor current does not reach zero before this instant, as long as the
+     * diode conducts
+     */
+    private double crossingFreeUntil;
+    private final DiodeConduction conduction = new DiodeConduction();
+
     @Override
     public void initialize() {
         capacitorVoltage = circuit.outputVoltage.get();
     }
 
-    private double inductorVoltage() {
-        var vIn = circuit.inputVoltage.get();
+    private double loadConductance(double instant) {
+        return circuit.load.calculateCurrent(1, instant);
+    }
+
+    /**
+     * Check if the diode conducts while the switch is open: either current is
+     * flowing, or the input voltage is high enough to start the current flow
+     */
+    private boolean diodeConducting(double vIn, double k) {
+        return iL > 0 || vIn - diodeForwardVoltageDrop - k * capacitorVoltage > 0;
+    }
+
+    /**
+     * Capacitor voltage after discharging it through the load for the given time,
+     * without current flowing in from the inductor.
+     */
+    private double discharge(double vC, double g, double k, double duration) {
+        // C*dvC/dt = -G*vOut = -G*k*vC
+        return vC * Math.exp(-g * k * duration / capacitance);
+    }
+
+    @Override
+    public void run(double stepStart, double stepEnd, double stepDuration) {
+        double vIn = circuit.inputVoltage.get();
+        double g = loadConductance(stepStart);
+        double k = 1 / (1 + capacitorESR * g);
+
+        double iIn;
         if (circuit.switchOn.get()) {
-            return vIn;
+            // the inductor is charged through the switch, V=L*di/dt
+            iL += vIn * stepDuration / inductance;
+            capacitorVoltage = discharge(capacitorVoltage, g, k, stepDuration);
+            iIn = 0;
+        } else if (diodeConducting(vIn, k)) {
+            conduction.setup(vIn, g, k);
+            double crossing;
+            if (stepEnd >= zeroCrossingInstant)
+                // the step ends at the zero crossing of the inductor current
+                crossing = stepDuration;
+            else if (stepEnd <= crossingFreeUntil)
+                crossing = Double.POSITIVE_INFINITY;
+            else
+                crossing = conduction.firstZeroCrossing(stepDuration);
+
+            if (crossing < Double.POSITIVE_INFINITY) {
+                // the current reaches zero within the step, continue in DCM
+                capacitorVoltage = discharge(conduction.vC(crossing), g, k, stepDuration - crossing);
+                iL = 0;
+            } else {
+                capacitorVoltage = conduction.vC(stepDuration);
+                iL = conduction.iL(stepDuration);
+            }
+            iIn = iL;
         } else {
-            return vIn - (circuit.outputVoltage.get() + diodeForwardVoltageDrop
-                    + capacitorESR * (iL - circuit.loadCurrent.get()));
+            // DCM, no current flowing
+            capacitorVoltage = discharge(capacitorVoltage, g, k, stepDuration);
+            iIn = 0;
         }
+
+        circuit.outputVoltage.set(k * (capacitorVoltage + capacitorESR * iIn));
+        circuit.inductorCurrent.set(iL);
     }
 
     @Override
-    public void run(double stepStart, double stepEnd, double stepDuration) {
-        double vL = inductorVoltage();
+    public void valuesPropagated(double instant) {
+        zeroCrossingInstant = Double.POSITIVE_INFINITY;
+        crossingFreeUntil = instant;
+        double vIn = circuit.inputVoltage.get();
+        double g = loadConductance(instant);
+        double k = 1 / (1 + capacitorESR * g);
+        cancelEvent();
+        if (!circuit.switchOn.get() && diodeConducting(vIn, k)) {
+            // determine when the current reaches zero, to correctly handle DCM. A crossing
+            // after the next event of another element is determined in a later step.
+            conduction.setup(vIn, g, k);
+            double horizon = Math.min(conduction.searchHorizon(), circuit.events.nextEventTime() - instant);
+            double crossing = conduction.firstZeroCrossing(horizon);
+            if (crossing < Double.POSITIVE_INFINITY)
+                zeroCrossingInstant = instant + crossing;
+            else
+                crossingFreeUntil = instant + horizon;
+        }
+        scheduleEvent(zeroCrossingInstant);
+    }
+
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        out.writeDouble(iL);
+        out.writeDouble(capacitorVoltage);
+    }
 
-        // change of the inductor voltage
-        // V=L*di/dt; di=V*dt/L
-        var dIL = vL * stepDuration / inductance;
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        iL = in.readDouble();
+        capacitorVoltage = in.readDouble();
+    }
 
-        var iLOld = iL;
+    /**
+     * Closed form solution of the stage while the switch is open and the diode
+     * conducts. The state x=(iL, vC) follows x'=A*x+b with
+     *
+     * <pre>
+     * L*iL' = vIn - vD - k*(vC + R*iL)
+     * C*vC' = k*(iL - G*vC)
+     * </pre>
+     *
+     * The solution is x(t)=xe+exp(A*t)*(x0-xe), with the equilibrium xe. For the
+     * 2x2 matrix, exp(A*t)=exp(s*t)*(c(t)*I+d(t)*M) with s=trace(A)/2, M=A-s*I
+     * and M*M=q*I, q=s*s-det(A).
+     */
+    private class DiodeConduction {
+        private double s;
+        private double q;
+        /** sqrt(|q|) */
+        private double r;
+        private double iLe, vCe;
+        private double di, dv;
+        /** M*(x0-xe) */
+        private double mi, mv;
 
-        // max: simulate diode: never let current flow backwards
-        iL = Math.max(iL + dIL, 0);
+        /** exp(s*t), c(t) and d(t) of the last call to {@link #at} */
+        private double e, c, d;
 
-        double iC;
-        if (circuit.switchOn.get())
-            iC = 0; // no current flowing into the output when the switch is on
-        else
-            iC = (iL + iLOld) / 2; // average inductor current
+        void setup(double vIn, double g, double k) {
+            double a11 = -k * capacitorESR / inductance;
+            double a12 = -k / inductance;
+            double a21 = k / capacitance;
+            double a22 = -g * k / capacitance;
+            s = (a11 + a22) / 2;
+            q = s * s - (a11 * a22 - a12 * a21);
+            r = Math.sqrt(Math.abs(q));
 
-        iC = iC - circuit.loadCurrent.get(); // no matter of the switch position, the load current is always drawn
-                                             // from the capacitor
+            // equilibrium, using k*(1+R*G)=1
+            vCe = vIn - diodeForwardVoltageDrop;
+            iLe = g * vCe;
+            di = iL - iLe;
+            dv = capacitorVoltage - vCe;
+            mi = (a11 - s) * di + a12 * dv;
+            mv = a21 * di + (a22 - s) * dv;
+        }
 
-        // I=C*dv/dt; dv=I*dt/C
-        capacitorVoltage += iC * stepDuration / capacitance;
+        private void at(double t) {
+            e = Math.exp(s * t);
+            if (q > 0) {
+                c = Math.cosh(r * t);
+                d = Math.sinh(r * t) / r;
+            } else if (q < 0) {
+                c = Math.cos(r * t);
+                d = Math.sin(r * t) / r;
+            } else {
+                c = 1;
+                d = t;
+            }
+        }
 
-        // apply capacitor internal resistance
-        circuit.outputVoltage.set(capacitorVoltage + capacitorESR * iC);
-        circuit.inductorCurrent.set(iL);
-    }
+        double iL(double t) {
+            at(t);
+            return iLe + e * (c * di + d * mi);
+        }
 
-    @Override
-    public Double stepEndTime(double stepStart) {
-        double vL = inductorVoltage();
-        // check if current is flowing forward against a negative voltage, thus it will
-        // reach zero eventually
-        if (vL < -1e-8 && iL > 1e-8) {
-            // determine when the current reaches zero, to correctly handle DCM
-            // V=L*di/dt; dt=L*di/V
-            return stepStart - inductance * iL / vL;
+        double vC(double t) {
+            at(t);
+            return vCe + e * (c * dv + d * mv);
         }
 
-        return null;
-    }
+        /**
+         * Derivative of the inductor current, using c'=q*d and d'=c
+         */
+        double diL(double t) {
+            at(t);
+            return e * (s * (c * di + d * mi) + q * d * di + c * mi);
+        }
+
+        /**
+         * Find the zero crossing of the inductor current within the bracket, using
+         * Newton iterations safeguarded by bisection. The current has to be
+         * non-negative at the start and negative at the end of the bracket.
+         */
+        double zeroCrossing(double lo, double hi) {
+            double t = (lo + hi) / 2;
+            for (int i = 0; i < 100; i++) {
+                double f = iL(t);
+                if (f >= 0)
+                    lo = t;
+                else
+                    hi = t;
+                double next = t - f / diL(t);
+                if (!(next > lo && next < hi))
+                    next = (lo + hi) / 2;
+                if (Math.abs(next - t) <= 1e-15 * hi) {
+                    t = next;
+                    break;
+                }
+                t = next;
+            }
+            // make sure the current is not positive at the returned instant
+            return iL(t) > 0 ? hi : t;
+        }
 
+        /**
+         * Time span in which {@link #valuesPropagated} searches for a zero crossing:
+         * one oscillation period, or five times the slowest time constant if the
+         * stage does not oscillate
+         */
+        double searchHorizon() {
+            if (q < 0)
+                return 2 * Math.PI / r;
+            return -5 / (s + r);
+        }
+
+        /**
+         * Return the time until the inductor current first reaches zero, or
+         * infinity if it does not within the given time. The current is sampled at
+         * a fraction of the oscillation period to find the first sign change.
+         */
+        double firstZeroCrossing(double maxTime) {
+            double interval = searchHorizon() / 32;
+            double lo = 0;
+            while (lo < maxTime) {
+                double hi = Math.min(lo + interval, maxTime);
+                if (iL(hi) < 0)
+                    return zeroCrossing(lo, hi);
+                lo = hi;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
 }
@@ -1,14 +1,16 @@
 package com.github.ruediste.digitalSmpsSim.boost;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
-import java.util.function.Function;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Supplier;
 
+import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
 import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
-import com.google.common.collect.EvictingQueue;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.NoiseSource;
 
 public abstract class ControlBase<TCircuit extends PowerCircuitBase> extends CircuitElement {
     protected final TCircuit circuit;
@@ -25,11 +27,38 @@ public abstract class ControlBase<TCircuit extends PowerCircuitBase> extends Cir
     public final HardwareTimer.Channel adcChannel;
     public final HardwareTimer controlTimer;
 
-    private List<EvictingQueue<Double>> adcQueues;
+    /**
+     * Number of ADC channels, converted one after another
+     */
+    public static final int adcChannelCount = 2;
+
+    /**
+     * Conversion results, interleaved by channel like the DMA buffer of the
+     * firmware ({@code adcBuf} in control_main.cpp). Conversion n is written to
+     * index {@code n % adcBuf.length}.
+     */
+    private double[] adcBuf = new double[adcChannelCount * 4];
+
+    /**
+     * Number of conversions so far
+     */
     private long adcIteration;
 
+    /**
+     * Number of samples per channel averaged by the controllers when reading the
+     * ADC. At most the {@link #setAdcBufferDepth buffer depth}.
+     */
+    public int adcAveraging = 1;
+
     public double measuredVoltage;
 
+    /**
+     * Source of the simulated ADC noise, drawn per channel and sample. Circuits
+     * with the same {@link com.github.ruediste.digitalSmpsSim.simulation.Circuit#forkKey}
+     * have to use the same seed.
+     */
+    public NoiseSource noise = new NoiseSource(0);
+
     protected ControlBase(TCircuit circuit) {
         super(circuit);
         this.circuit = circuit;
@@ -38,34 +67,36 @@ public abstract class ControlBase<TCircuit extends PowerCircuitBase> extends Cir
         pwmChannel = pwmTimer.createChannel((instant) -> {
             circuit.switchOn.set(false);
         });
-        adcChannel = pwmTimer.createChannel((instant) -> circuit
-                .withUpdatedValues(
-                        () -> {
-                            if ((adcIteration % adcQueues.size()) == 0) {
-                                double voltage = circuit.outputVoltage.get();
-                                adcQueues.get(0).add(voltage);
-                                measuredVoltage = voltage;
-                            }
-                            if ((adcIteration % adcQueues.size()) == 1) {
-                                adcQueues.get(1).add(circuit.inputVoltage.get());
-                            }
-                            adcIteration++;
-                        }));
+        int adcConversion = circuit.registerDeferredAction(this::convertAdc);
+        adcChannel = pwmTimer.createChannel((instant) -> circuit.withUpdatedValues(adcConversion));
         pwmTimer.onReload = (instant) -> {
             if (!pwmChannel.getDisableApplied()) {
                 circuit.switchOn.set(true);
             }
         };
         circuit.switchOn.initialize(true);
+    }
 
-        adcQueues = new ArrayList<>();
-        for (int i = 0; i < 2; i++) {
-            EvictingQueue<Double> queue = EvictingQueue.create(4);
-            adcQueues.add(queue);
-            while (queue.remainingCapacity() > 0)
-                queue.add(0.);
-        }
+    /**
+     * Convert the next channel: channel 0 is the output voltage, channel 1 the
+     * input voltage
+     */
+    private void convertAdc() {
+        int channel = (int) (adcIteration % adcChannelCount);
+        double voltage = channel == 0 ? circuit.outputVoltage.get() : circuit.inputVoltage.get();
+        if (channel == 0)
+            measuredVoltage = voltage;
+        adcBuf[(int) (adcIteration % adcBuf.length)] = voltage;
+        adcIteration++;
+    }
 
+    /**
+     * Set the number of samples per channel kept in the ADC buffer, clearing the
+     * buffer. Has to be invoked before the ADC channels are filled.
+     */
+    public void setAdcBufferDepth(int depth) {
+        adcBuf = new double[adcChannelCount * depth];
+        adcAveraging = Math.min(adcAveraging, depth);
     }
 
     public abstract double targetValue(double instant);
@@ -86,31 +117,99 @@ public abstract class ControlBase<TCircuit extends PowerCircuitBase> extends Cir
      */
     public abstract void initializeSteadyState();
 
-    public abstract <T extends PowerCircuitBase> Consumer<T> optimize(List<Supplier<T>> circuitSuppliers);
+    /**
+     * Parameters tuned by {@link #optimize}
+     */
+    public abstract List<? extends Optimizer.OptimizationParameter<?>> optimizationParameters();
+
+    public <T extends PowerCircuitBase> Consumer<T> optimize(List<Supplier<T>> circuitSuppliers) {
+        return optimize(new Optimizer(), circuitSuppliers);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public <T extends PowerCircuitBase> Consumer<T> optimize(Optimizer optimizer, List<Supplier<T>> circuitSuppliers) {
+        return optimizer.optimize((List) optimizationParameters(), circuitSuppliers);
+    }
 
     protected final void fillAdcChannel(int channel, double value) {
-        var queue = adcQueues.get(channel);
-        for (int i = 0; i < queue.size(); i++) {
-            queue.add(value);
-        }
+        for (int i = channel; i < adcBuf.length; i += adcChannelCount)
+            adcBuf[i] = value;
     }
 
     protected final double readAdcChannel(int channel, int samples) {
-        return readAdcChannel(channel, samples, x -> x);
+        return readAdcChannel(channel, samples, x -> x, 0);
+    }
+
+    protected final double readAdcChannel(int channel, int samples, DoubleUnaryOperator map) {
+        return readAdcChannel(channel, samples, map, 0);
     }
 
-    protected final double readAdcChannel(int channel, int samples, Function<Double, Double> map) {
+    /**
+     * Average of the last samples of a channel, converted to ADC counts. Gaussian
+     * noise with the given standard deviation is added to each sample, the same
+     * noise each time a sample is read.
+     *
+     * <p>
+     * Walks the buffer like {@code readADCValues} of the firmware: the last
+     * {@code samples * adcChannelCount} entries before the next write position,
+     * skipping the other channels.
+     */
+    protected final double readAdcChannel(int channel, int samples, DoubleUnaryOperator toAdc, double noiseSigma) {
+        if (samples < 1 || samples * adcChannelCount > adcBuf.length)
+            throw new IllegalArgumentException("Invalid number of samples: " + samples);
+        int offset = (int) (adcIteration % adcBuf.length);
         double sum = 0;
-        var values = adcQueues.get(channel).stream().toList();
-        for (int i = 1; i <= samples; i++) {
-            sum += map.apply(values.get(values.size() - i));
+        for (int i = adcBuf.length - samples * adcChannelCount; i < adcBuf.length; i++) {
+            int bufIdx = (i + offset) % adcBuf.length;
+            if (bufIdx % adcChannelCount != channel)
+                continue;
+            double value = toAdc.applyAsDouble(adcBuf[bufIdx]);
+            if (noiseSigma != 0) {
+                // index of the sample within the channel, negative for the initial fill
+                long sample = Math.floorDiv(adcIteration - adcBuf.length + i, adcChannelCount);
+                value += noiseSigma * noise.gaussian(channel, sample);
+            }
+            sum += value;
         }
         return sum / samples;
     }
 
+    /**
+     * State of the controller which repeats in a periodic steady state, in
+     * addition to the circuit state. Used by the
+     * {@link com.github.ruediste.digitalSmpsSim.simulation.SteadyStateFinder}.
+     */
+    public List<DoubleSupplier> steadyStateValues() {
+        return List.of();
+    }
+
     @Override
     public void initialize() {
         super.initialize();
         measuredVoltage = circuit.outputVoltage.get();
     }
+
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        out.writeObject(adcBuf.clone());
+        out.writeLong(adcIteration);
+        out.writeDouble(measuredVoltage);
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        double[] values = in.readObject();
+        System.arraycopy(values, 0, adcBuf, 0, adcBuf.length);
+        adcIteration = in.readLong();
+        measuredVoltage = in.readDouble();
+    }
+
+    /**
+     * The controllers are driven by the callbacks of the timers, thus they do not
+     * need to be run in every step.
+     */
+    @Override
+    public boolean isContinuous() {
+        return false;
+    }
 }
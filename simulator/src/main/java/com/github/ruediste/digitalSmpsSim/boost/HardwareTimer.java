@@ -5,6 +5,7 @@ import java.util.List;
 
 import com.github.ruediste.digitalSmpsSim.simulation.Circuit;
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
 
 public class HardwareTimer extends CircuitElement {
     protected HardwareTimer(Circuit circuit) {
@@ -52,40 +53,95 @@ public class HardwareTimer extends CircuitElement {
         }
     }
 
+    /**
+     * Instant of the next reload of the timer
+     */
+    public double getNextCycleStart() {
+        return nextCycleStart;
+    }
+
     @Override
     public void postInitialize() {
         updateInstants();
+        scheduleNextEvent(0);
     }
 
     @Override
-    public Double stepEndTime(double stepStart) {
-        Double result = null;
-        if (stepStart < nextCycleStart)
-            result = nextCycleStart;
+    public boolean isContinuous() {
+        return false;
+    }
+
+    /**
+     * Schedule the earliest reload or compare match after the given instant.
+     * Compare matches of disabled channels are included, to keep the step
+     * boundaries independent of the channel state. A compare match which is not
+     * after the instant (compare value of zero) is handled in the next step.
+     */
+    private void scheduleNextEvent(double instant) {
+        double next = Double.POSITIVE_INFINITY;
+        if (instant < nextCycleStart)
+            next = nextCycleStart;
 
         for (var channel : channels) {
-            if (stepStart < channel.nextCompareMatchInstant) {
-                result = result == null ? channel.nextCompareMatchInstant
-                        : Math.min(result, channel.nextCompareMatchInstant);
+            if (instant < channel.nextCompareMatchInstant) {
+                next = Math.min(next, channel.nextCompareMatchInstant);
+            } else if (!channel.matched && !channel.disableApplied) {
+                runInNextStep();
             }
         }
-        return result;
+        scheduleEvent(next);
     }
 
-    @Override
-    public void run(double stepStart, double stepEnd, double stepDuration) {
+    private void matchChannels(double instant) {
         for (var channel : channels) {
-            if (!channel.matched && stepEnd >= channel.nextCompareMatchInstant && !channel.disableApplied) {
-                channel.onCompare.run(stepEnd);
+            if (!channel.matched && instant >= channel.nextCompareMatchInstant && !channel.disableApplied) {
+                channel.onCompare.run(instant);
                 channel.matched = true;
             }
         }
+    }
+
+    @Override
+    public void run(double stepStart, double stepEnd, double stepDuration) {
+        matchChannels(stepEnd);
         if (stepEnd >= nextCycleStart) {
             lastCycleStart = nextCycleStart;
             updateInstants();
             if (onReload != null)
                 onReload.run(stepEnd);
         }
+        scheduleNextEvent(stepEnd);
+    }
+
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        out.writeLong(prescale);
+        out.writeLong(reload);
+        out.writeInstant(lastCycleStart);
+        out.writeInstant(nextCycleStart);
+        for (var channel : channels) {
+            out.writeLong(channel.compare);
+            out.writeInstant(channel.nextCompareMatchInstant);
+            out.writeBoolean(channel.matched);
+            out.writeBoolean(channel.disable);
+            out.writeBoolean(channel.disableApplied);
+        }
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        prescale = in.readLong();
+        reload = in.readLong();
+        lastCycleStart = in.readInstant();
+        nextCycleStart = in.readInstant();
+        for (var channel : channels) {
+            channel.compare = in.readLong();
+            channel.nextCompareMatchInstant = in.readInstant();
+            channel.matched = in.readBoolean();
+            channel.disable = in.readBoolean();
+            channel.disableApplied = in.readBoolean();
+        }
+        scheduleNextEvent(instant);
     }
 
     public Channel createChannel(TimerCallback onCompare) {
@@ -0,0 +1,259 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+
+/**
+ * Covariance matrix adaptation evolution strategy with an ask/tell interface.
+ * In contrast to the {@code CMAESOptimizer} of commons-math, which evaluates
+ * one candidate at a time, the caller obtains all candidates of a generation
+ * with {@link #ask()}, evaluates them in any order (typically in parallel) and
+ * reports the values with {@link #tell}. Values are minimized.
+ *
+ * <p>
+ * Follows "The CMA Evolution Strategy: A Tutorial" by N. Hansen. Candidates
+ * outside of the bounds are projected onto the bounds, and the projected
+ * candidates are used to update the distribution.
+ */
+public class CmaEs {
+    private final int n;
+    private final int lambda;
+    private final int mu;
+    private final double[] weights;
+    private final double mueff;
+    private final double cc;
+    private final double cs;
+    private final double c1;
+    private final double cmu;
+    private final double damps;
+    private final double chiN;
+
+    private final double[] lowerBound;
+    private final double[] upperBound;
+    private final Random random;
+
+    private double[] mean;
+    private double sigma = 1;
+    private double[] pc;
+    private double[] ps;
+    private double[][] c;
+    private double[][] b;
+    private double[] d;
+    private double[][] invSqrtC;
+    private long eigenEvaluation;
+
+    private long evaluations;
+    private int iterations;
+    private double[] bestPoint;
+    private double bestValue = Double.POSITIVE_INFINITY;
+    private double[] lastGenerationBest;
+    private double[] generationBest;
+    private double selectionThreshold = Double.POSITIVE_INFINITY;
+    private double[][] parents = new double[0][];
+
+    /**
+     * @param sigma initial standard deviation of each coordinate
+     */
+    public CmaEs(double[] initialGuess, double[] sigma, double[] lowerBound, double[] upperBound, int populationSize,
+            long seed) {
+        n = initialGuess.length;
+        lambda = populationSize;
+        mu = lambda / 2;
+        weights = new double[mu];
+        for (int i = 0; i < mu; i++)
+            weights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+        double sum = Arrays.stream(weights).sum();
+        double sumSq = 0;
+        for (int i = 0; i < mu; i++) {
+            weights[i] /= sum;
+            sumSq += weights[i] * weights[i];
+        }
+        mueff = 1 / sumSq;
+
+        cc = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+        cs = (mueff + 2) / (n + mueff + 5);
+        c1 = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+        cmu = Math.min(1 - c1, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+        damps = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+        chiN = Math.sqrt(n) * (1 - 1. / (4 * n) + 1. / (21 * n * n));
+
+        this.lowerBound = lowerBound.clone();
+        this.upperBound = upperBound.clone();
+        random = new Random(seed);
+
+        // the initial standard deviations are represented by the covariance matrix,
+        // the step size starts at one
+        mean = initialGuess.clone();
+        pc = new double[n];
+        ps = new double[n];
+        c = new double[n][n];
+        for (int i = 0; i < n; i++)
+            c[i][i] = sigma[i] * sigma[i];
+        updateEigenDecomposition();
+    }
+
+    private void updateEigenDecomposition() {
+        // enforce symmetry
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < i; j++)
+                c[j][i] = c[i][j];
+        var eigen = new EigenDecomposition(new Array2DRowRealMatrix(c, false));
+        b = eigen.getV().getData();
+        d = new double[n];
+        for (int i = 0; i < n; i++)
+            d[i] = Math.sqrt(Math.max(eigen.getRealEigenvalue(i), 1e-300));
+        invSqrtC = new double[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++) {
+                double value = 0;
+                for (int k = 0; k < n; k++)
+                    value += b[i][k] / d[k] * b[j][k];
+                invSqrtC[i][j] = value;
+            }
+        eigenEvaluation = evaluations;
+    }
+
+    /**
+     * Sample the candidates of the next generation
+     */
+    public double[][] ask() {
+        if (evaluations - eigenEvaluation > lambda / (c1 + cmu) / n / 10)
+            updateEigenDecomposition();
+        var result = new double[lambda][];
+        for (int k = 0; k < lambda; k++) {
+            var z = new double[n];
+            for (int i = 0; i < n; i++)
+                z[i] = d[i] * random.nextGaussian();
+            var x = new double[n];
+            for (int i = 0; i < n; i++) {
+                double value = 0;
+                for (int j = 0; j < n; j++)
+                    value += b[i][j] * z[j];
+                x[i] = Math.min(upperBound[i], Math.max(lowerBound[i], mean[i] + sigma * value));
+            }
+            result[k] = x;
+        }
+        return result;
+    }
+
+    /**
+     * Update the distribution with the values of the candidates returned by the
+     * last {@link #ask()}
+     */
+    public void tell(double[][] points, double[] values) {
+        evaluations += points.length;
+        iterations++;
+        var order = IntStream.range(0, points.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> values[i])).mapToInt(i -> i).toArray();
+        lastGenerationBest = generationBest;
+        generationBest = points[order[0]];
+        selectionThreshold = values[order[mu - 1]];
+        parents = new double[mu][];
+        for (int k = 0; k < mu; k++)
+            parents[k] = points[order[k]].clone();
+        if (values[order[0]] < bestValue) {
+            bestValue = values[order[0]];
+            bestPoint = points[order[0]].clone();
+        }
+
+        var oldMean = mean;
+        mean = new double[n];
+        for (int k = 0; k < mu; k++)
+            for (int i = 0; i < n; i++)
+                mean[i] += weights[k] * points[order[k]][i];
+
+        var step = new double[n];
+        for (int i = 0; i < n; i++)
+            step[i] = (mean[i] - oldMean[i]) / sigma;
+
+        double psNorm = 0;
+        for (int i = 0; i < n; i++) {
+            double value = 0;
+            for (int j = 0; j < n; j++)
+                value += invSqrtC[i][j] * step[j];
+            ps[i] = (1 - cs) * ps[i] + Math.sqrt(cs * (2 - cs) * mueff) * value;
+            psNorm += ps[i] * ps[i];
+        }
+        psNorm = Math.sqrt(psNorm);
+        boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2. * evaluations / lambda)) / chiN < 1.4
+                + 2. / (n + 1);
+        for (int i = 0; i < n; i++)
+            pc[i] = (1 - cc) * pc[i] + (hsig ? Math.sqrt(cc * (2 - cc) * mueff) * step[i] : 0);
+
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j <= i; j++) {
+                double rankMu = 0;
+                for (int k = 0; k < mu; k++) {
+                    var x = points[order[k]];
+                    rankMu += weights[k] * (x[i] - oldMean[i]) * (x[j] - oldMean[j]);
+                }
+                rankMu /= sigma * sigma;
+                c[i][j] = (1 - c1 - cmu) * c[i][j]
+                        + c1 * (pc[i] * pc[j] + (hsig ? 0 : cc * (2 - cc) * c[i][j]))
+                        + cmu * rankMu;
+            }
+
+        sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1));
+    }
+
+    /**
+     * True if the best candidates of the last two generations differ by less than
+     * the given relative tolerance in each coordinate
+     */
+    public boolean hasConverged(double relativeTolerance) {
+        if (lastGenerationBest == null)
+            return false;
+        for (int i = 0; i < n; i++) {
+            double p = lastGenerationBest[i];
+            double q = generationBest[i];
+            if (Math.abs(p - q) > relativeTolerance * Math.max(Math.abs(p), Math.abs(q)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Number of candidates of a generation used to update the distribution
+     */
+    public int getParentCount() {
+        return mu;
+    }
+
+    /**
+     * Value of the worst candidate of the last generation which was used to update
+     * the distribution, or infinity before the first generation. Only the ranks of
+     * the candidates up to this value affect the update.
+     */
+    public double getSelectionThreshold() {
+        return selectionThreshold;
+    }
+
+    /**
+     * Candidates of the last generation which were used to update the
+     * distribution, the best first
+     */
+    public double[][] getParents() {
+        return parents;
+    }
+
+    public double[] getBestPoint() {
+        return bestPoint;
+    }
+
+    public double getBestValue() {
+        return bestValue;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
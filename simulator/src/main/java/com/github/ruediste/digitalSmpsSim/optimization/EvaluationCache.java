@@ -0,0 +1,270 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent cache of the cost of simulated circuits. The keys are hashes of
+ * the configuration of a circuit, see {@link #fingerprint(Object)} and
+ * {@link #codeFingerprint(Collection)}. The least recently used entries are
+ * evicted once the cache is full.
+ *
+ * <p>
+ * New entries are appended to the file right away. When the cache is
+ * {@link #close() closed}, the file is rewritten with the retained entries,
+ * the most recently used last.
+ */
+public class EvaluationCache implements AutoCloseable {
+    private final Path file;
+    private final LinkedHashMap<String, Double> entries;
+    private BufferedWriter writer;
+
+    public EvaluationCache(Path file, int maxEntries) {
+        this.file = file;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        try {
+            if (Files.exists(file)) {
+                for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    var parts = line.split(" ");
+                    if (parts.length == 2)
+                        entries.put(parts[0], Double.parseDouble(parts[1]));
+                }
+            } else if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return the cached cost, or null if the key is not present
+     */
+    public synchronized Double get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, double cost) {
+        entries.put(key, cost);
+        try {
+            writer.write(key + " " + cost + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Write the appended entries to the file
+     */
+    public synchronized void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrite the file with the retained entries
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (var entry : entries.entrySet())
+                    out.write(entry.getKey() + " " + entry.getValue() + "\n");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SHA-256 hash of the given parts, as hex string
+     */
+    public static String hash(Object... parts) {
+        var digest = sha256();
+        for (var part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hash of the class files of the given classes and their super classes. Used
+     * to invalidate the entries when the code of the simulation changes.
+     */
+    public static String codeFingerprint(Collection<Class<?>> classes) {
+        var digest = sha256();
+        classes.stream().flatMap(c -> {
+            var hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> cls = c; cls != null && cls != Object.class; cls = cls.getSuperclass())
+                hierarchy.add(cls);
+            return hierarchy.stream();
+        }).distinct().sorted(Comparator.comparing(Class::getName)).forEach(cls -> {
+            var resource = "/" + cls.getName().replace('.', '/') + ".class";
+            try (var in = cls.getResourceAsStream(resource)) {
+                if (in != null)
+                    digest.update(in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the class files of the packages of the given classes, including
+     * the classes which are only used indirectly by the simulation. Works for
+     * class directories and jar files.
+     */
+    public static String packageFingerprint(Collection<Class<?>> members) {
+        var digest = sha256();
+        members.stream().map(Class::getPackageName).distinct().sorted().forEach(packageName -> {
+            var anchor = members.stream().filter(c -> c.getPackageName().equals(packageName)).findFirst().get();
+            try {
+                var root = Path.of(anchor.getProtectionDomain().getCodeSource().getLocation().toURI());
+                try (var jar = Files.isDirectory(root) ? null : FileSystems.newFileSystem(root)) {
+                    var dir = jar == null ? root.resolve(packageName.replace('.', '/'))
+                            : jar.getPath(packageName.replace('.', '/'));
+                    List<Path> files;
+                    try (var list = Files.list(dir)) {
+                        files = list.filter(f -> f.getFileName().toString().endsWith(".class"))
+                                .sorted(Comparator.comparing(f -> f.getFileName().toString())).toList();
+                    }
+                    for (var file : files) {
+                        digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (URISyntaxException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the configuration of an object, typically a freshly created
+     * circuit. The fields of the objects of this project reachable from the given
+     * object are included, with primitive values, strings, enums and primitive
+     * arrays contributing their values. Lambdas are skipped.
+     */
+    public static String fingerprint(Object root) {
+        var sb = new StringBuilder();
+        appendFingerprint(sb, root, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return hash(sb);
+    }
+
+    private static void appendFingerprint(StringBuilder sb, Object value, Set<Object> visited) {
+        if (value == null) {
+            sb.append("null;");
+            return;
+        }
+        var cls = value.getClass();
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof String || value instanceof Enum) {
+            sb.append(value).append(';');
+            return;
+        }
+        if (cls.isArray() && cls.getComponentType().isPrimitive()) {
+            if (value instanceof double[] array)
+                sb.append(Arrays.toString(array));
+            else if (value instanceof long[] array)
+                sb.append(Arrays.toString(array));
+            else if (value instanceof int[] array)
+                sb.append(Arrays.toString(array));
+            else if (value instanceof boolean[] array)
+                sb.append(Arrays.toString(array));
+            sb.append(';');
+            return;
+        }
+        if (!visited.add(value))
+            return;
+        if (value instanceof Collection<?> collection) {
+            sb.append('[');
+            for (var element : collection)
+                appendFingerprint(sb, element, visited);
+            sb.append(']');
+            return;
+        }
+        if (cls.isArray()) {
+            sb.append('[');
+            for (var element : (Object[]) value)
+                appendFingerprint(sb, element, visited);
+            sb.append(']');
+            return;
+        }
+        if (cls.isHidden() || cls.isSynthetic() || !isProjectClass(cls))
+            return;
+
+        sb.append(cls.getName()).append('{');
+        for (Class<?> c = cls; c != null && isProjectClass(c); c = c.getSuperclass()) {
+            var fields = c.getDeclaredFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (var field : fields) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+                    continue;
+                field.setAccessible(true);
+                sb.append(field.getName()).append('=');
+                try {
+                    appendFingerprint(sb, field.get(value), visited);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        sb.append('}');
+    }
+
+    private static boolean isProjectClass(Class<?> cls) {
+        return cls.getName().startsWith("com.github.ruediste.");
+    }
+}
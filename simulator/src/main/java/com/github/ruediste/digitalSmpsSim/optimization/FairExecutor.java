@@ -0,0 +1,130 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread pool shared by concurrent clients, typically optimizations. Each
+ * client submits its tasks to its own {@link Lane}. A free thread takes the
+ * next task of the lane which has used the least thread time so far, such that
+ * a client with many queued tasks does not starve the others. A new lane starts
+ * with the least time of the existing lanes, and thus gets no credit for the
+ * time before it was created.
+ */
+public class FairExecutor implements AutoCloseable {
+    private final Logger log = LoggerFactory.getLogger(FairExecutor.class);
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Source of the thread time used by the lanes, replaced in tests
+     */
+    LongSupplier clock = System::nanoTime;
+
+    public FairExecutor(int threadCount) {
+        for (int i = 0; i < threadCount; i++) {
+            var thread = new Thread(this::runThread, "fair-executor-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * Queue of the tasks of a client. Closing a lane discards the tasks which
+     * have not been started yet.
+     */
+    public class Lane implements Executor, AutoCloseable {
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private long usedNanos;
+        private boolean laneClosed;
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (FairExecutor.this) {
+                if (laneClosed || closed)
+                    throw new RejectedExecutionException("Executor closed");
+                queue.add(command);
+                FairExecutor.this.notify();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (FairExecutor.this) {
+                laneClosed = true;
+                queue.clear();
+                lanes.remove(this);
+            }
+        }
+    }
+
+    public synchronized Lane newLane() {
+        if (closed)
+            throw new RejectedExecutionException("Executor closed");
+        var lane = new Lane();
+        lane.usedNanos = lanes.stream().mapToLong(x -> x.usedNanos).min().orElse(0);
+        lanes.add(lane);
+        return lane;
+    }
+
+    private synchronized Lane nextLane() throws InterruptedException {
+        while (!closed) {
+            Lane next = null;
+            for (var lane : lanes)
+                if (!lane.queue.isEmpty() && (next == null || lane.usedNanos < next.usedNanos))
+                    next = lane;
+            if (next != null)
+                return next;
+            wait();
+        }
+        return null;
+    }
+
+    private void runThread() {
+        try {
+            while (true) {
+                Lane lane;
+                Runnable task;
+                synchronized (this) {
+                    lane = nextLane();
+                    if (lane == null)
+                        return;
+                    task = lane.queue.poll();
+                }
+                long start = clock.getAsLong();
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Error in task", t);
+                }
+                synchronized (this) {
+                    lane.usedNanos += clock.getAsLong() - start;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Discard all queued tasks and stop the threads once their current task is
+     * completed
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        lanes.forEach(lane -> lane.queue.clear());
+        lanes.clear();
+        notifyAll();
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+/**
+ * Gaussian process regression with a squared exponential kernel. The observed
+ * values are normalized to zero mean and unit variance, the signal variance is
+ * one. The length scales and the noise variance are given, or selected by
+ * maximizing the marginal likelihood over a grid in {@link #fit}.
+ */
+public class GaussianProcess {
+    private final double[][] x;
+    private final double[] lengthScales;
+    private final double noise;
+    private final double yMean;
+    private final double yStd;
+    private final double[][] l;
+    private final double[] alpha;
+    private final double logMarginalLikelihood;
+
+    /**
+     * @param lengthScales length scale of each dimension
+     * @param noise        variance of the observation noise, relative to the
+     *                     variance of the values
+     */
+    public GaussianProcess(double[][] x, double[] y, double[] lengthScales, double noise) {
+        int n = x.length;
+        this.x = x;
+        this.lengthScales = lengthScales;
+        this.noise = noise;
+
+        double mean = 0;
+        for (var v : y)
+            mean += v;
+        mean /= n;
+        double variance = 0;
+        for (var v : y)
+            variance += (v - mean) * (v - mean);
+        yMean = mean;
+        yStd = n > 1 && variance > 0 ? Math.sqrt(variance / (n - 1)) : 1;
+        var yn = new double[n];
+        for (int i = 0; i < n; i++)
+            yn[i] = (y[i] - yMean) / yStd;
+
+        var k = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++)
+                k[i][j] = k[j][i] = kernel(x[i], x[j]);
+            k[i][i] = 1 + noise + 1e-10;
+        }
+        l = cholesky(k);
+        alpha = solveUpperTransposed(l, solveLower(l, yn));
+
+        double lml = 0;
+        for (int i = 0; i < n; i++)
+            lml += -0.5 * yn[i] * alpha[i] - Math.log(l[i][i]);
+        logMarginalLikelihood = lml - 0.5 * n * Math.log(2 * Math.PI);
+    }
+
+    /**
+     * Fit a process to the observations, selecting the length scales (as
+     * multiples of the given scales) and the noise by the marginal likelihood
+     */
+    public static GaussianProcess fit(double[][] x, double[] y, double[] scales) {
+        GaussianProcess best = null;
+        for (double factor : new double[] { 0.125, 0.25, 0.5, 1, 2, 4 }) {
+            var lengthScales = new double[scales.length];
+            for (int d = 0; d < scales.length; d++)
+                lengthScales[d] = factor * scales[d];
+            for (double noise : new double[] { 1e-6, 1e-4, 1e-2, 1e-1 }) {
+                try {
+                    var gp = new GaussianProcess(x, y, lengthScales, noise);
+                    if (best == null || gp.logMarginalLikelihood > best.logMarginalLikelihood)
+                        best = gp;
+                } catch (ArithmeticException e) {
+                    // kernel matrix not positive definite, skip
+                }
+            }
+        }
+        if (best == null)
+            throw new ArithmeticException("Unable to fit a gaussian process");
+        return best;
+    }
+
+    /**
+     * Copy of this process with an additional observation, keeping the
+     * hyperparameters
+     */
+    public GaussianProcess with(double[] point, double value, double[] y) {
+        var x2 = new double[x.length + 1][];
+        System.arraycopy(x, 0, x2, 0, x.length);
+        x2[x.length] = point;
+        var y2 = new double[y.length + 1];
+        System.arraycopy(y, 0, y2, 0, y.length);
+        y2[y.length] = value;
+        return new GaussianProcess(x2, y2, lengthScales, noise);
+    }
+
+    private double kernel(double[] a, double[] b) {
+        double sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            double diff = (a[d] - b[d]) / lengthScales[d];
+            sum += diff * diff;
+        }
+        return Math.exp(-0.5 * sum);
+    }
+
+    /**
+     * Posterior mean and variance of the value at the given point
+     */
+    public double[] predict(double[] point) {
+        int n = x.length;
+        var k = new double[n];
+        for (int i = 0; i < n; i++)
+            k[i] = kernel(point, x[i]);
+        double mean = 0;
+        for (int i = 0; i < n; i++)
+            mean += k[i] * alpha[i];
+        var v = solveLower(l, k);
+        double variance = 1;
+        for (int i = 0; i < n; i++)
+            variance -= v[i] * v[i];
+        return new double[] { yMean + yStd * mean, Math.max(0, variance) * yStd * yStd };
+    }
+
+    public double logMarginalLikelihood() {
+        return logMarginalLikelihood;
+    }
+
+    public double[] lengthScales() {
+        return lengthScales;
+    }
+
+    private static double[][] cholesky(double[][] a) {
+        int n = a.length;
+        var l = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i][j];
+                for (int k = 0; k < j; k++)
+                    sum -= l[i][k] * l[j][k];
+                if (i == j) {
+                    if (sum <= 0)
+                        throw new ArithmeticException("Matrix not positive definite");
+                    l[i][i] = Math.sqrt(sum);
+                } else
+                    l[i][j] = sum / l[j][j];
+            }
+        }
+        return l;
+    }
+
+    private static double[] solveLower(double[][] l, double[] b) {
+        int n = b.length;
+        var x = new double[n];
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++)
+                sum -= l[i][k] * x[k];
+            x[i] = sum / l[i][i];
+        }
+        return x;
+    }
+
+    private static double[] solveUpperTransposed(double[][] l, double[] b) {
+        int n = b.length;
+        var x = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int k = i + 1; k < n; k++)
+                sum -= l[k][i] * x[k];
+            x[i] = sum / l[i][i];
+        }
+        return x;
+    }
+}
@@ -1,27 +1,32 @@
 package com.github.ruediste.digitalSmpsSim.optimization;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-
-import org.apache.commons.math3.analysis.MultivariateFunction;
-import org.apache.commons.math3.optim.InitialGuess;
-import org.apache.commons.math3.optim.MaxEval;
-import org.apache.commons.math3.optim.MaxIter;
-import org.apache.commons.math3.optim.SimpleBounds;
-import org.apache.commons.math3.optim.SimplePointChecker;
-import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
-import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
-import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.CMAESOptimizer;
-import org.apache.commons.math3.random.JDKRandomGenerator;
+import java.util.stream.IntStream;
 
 import com.github.ruediste.digitalSmpsSim.boost.ControlBase;
 import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
+import com.github.ruediste.digitalSmpsSim.simulation.Circuit;
+import com.github.ruediste.digitalSmpsSim.simulation.ConvergenceMonitor;
+import com.github.ruediste.digitalSmpsSim.simulation.CostBudget;
+import com.github.ruediste.digitalSmpsSim.simulation.EventQueue;
 import com.github.ruediste.digitalSmpsSim.simulation.Simulator;
+import com.github.ruediste.digitalSmpsSim.simulation.SteadyStateFinder;
 
 public class Optimizer {
 
@@ -45,6 +50,141 @@ public class Optimizer {
 
     }
 
+    /**
+     * If set, the periods of the prefix before the event in which the circuit is in
+     * steady state are skipped, see {@link SteadyStateFinder}. This is faster, but
+     * the extrapolated state changes the costs slightly, thus it is off by
+     * default.
+     */
+    public boolean skipSteadyState = false;
+
+    /**
+     * If set, the simulations end once the circuit is in steady state, see
+     * {@link ConvergenceMonitor}, and the remaining cost is extrapolated. This is
+     * faster, but approximates the cost, thus it is off by default.
+     */
+    public boolean stopAtSteadyState = false;
+
+    /**
+     * Number of candidates per generation
+     */
+    public int populationSize = 30;
+
+    /**
+     * Maximum number of evaluated candidates
+     */
+    public int maxEvaluations = 1000;
+
+    /**
+     * Number of threads running the simulations, unless an {@link #executor} is
+     * set
+     */
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Executor running the simulations, for example a lane of a
+     * {@link FairExecutor} shared by concurrent optimizations. If null, a pool of
+     * {@link #threads} threads is created for the optimization.
+     */
+    public Executor executor;
+
+    /**
+     * Number of {@link Worker} processes simulating the scenarios. If zero, the
+     * scenarios are simulated in this JVM. The workers rebuild the scenarios from
+     * the {@link #scenarioSource}, and apply the points to the
+     * {@link ControlBase#optimizationParameters()} with the names of the optimized
+     * parameters. Cost budgets are not supported by the workers.
+     */
+    public int workers = 0;
+
+    /**
+     * Source of the scenarios for the workers. Has to provide all optimized
+     * scenarios.
+     */
+    public Class<? extends ScenarioSource> scenarioSource;
+
+    /**
+     * Additional arguments of the worker JVMs
+     */
+    public List<String> workerJvmArgs = List.of();
+
+    /**
+     * If set, the candidates are proposed by a {@link SurrogateSearch} instead of
+     * CMA-ES. Each candidate is evaluated on all scenarios.
+     */
+    public boolean surrogate = false;
+
+    /**
+     * Number of evaluated candidates of the surrogate search
+     */
+    public int surrogateEvaluations = 100;
+
+    /**
+     * Number of candidates of the surrogate search which are evaluated in
+     * parallel
+     */
+    public int surrogateBatchSize = 4;
+
+    /**
+     * If set, the simulations of a candidate are aborted once the accumulated cost
+     * of its scenarios exceeds the selection threshold of the previous generation,
+     * see {@link CostBudget}. Such candidates cannot become parents of the next
+     * generation, unless too few candidates are below the threshold. Then they
+     * are simulated again without budget.
+     */
+    public boolean abortAboveThreshold = false;
+
+    /**
+     * Multi fidelity: about every n-th scenario is used to screen the candidates,
+     * see {@link #screeningScenarios}. Only the most promising candidates are
+     * evaluated on the remaining scenarios, see {@link #promotedFraction}. By
+     * default all candidates are evaluated completely.
+     */
+    public int screeningStride = 1;
+
+    /**
+     * Fraction of the candidates of a generation which are evaluated on all
+     * scenarios after screening. At least the parents of the next generation are
+     * evaluated completely.
+     */
+    public double promotedFraction = 0.5;
+
+    /**
+     * File of the {@link EvaluationCache}, storing the cost of each simulated
+     * circuit, for example {@code target/optimizer-cache.txt}. If null, no cache
+     * is used.
+     */
+    public Path cacheFile;
+
+    /**
+     * Maximum number of entries retained in the cache
+     */
+    public int cacheSize = 100_000;
+
+    /**
+     * If a cache is used, the candidates are rounded to multiples of this fraction
+     * of the sigma of each parameter, such that close points share the cache
+     * entries
+     */
+    public double cacheQuantum = 1e-6;
+
+    /**
+     * Cache shared by concurrent optimizations, which is used instead of the
+     * {@link #cacheFile} and not closed by the optimization
+     */
+    public EvaluationCache sharedCache;
+
+    /**
+     * Invoked after each generation of the CMA-ES search, used by the tests
+     */
+    Consumer<CmaEs> generationCompleted = cma -> {
+    };
+
+    private ConvergenceMonitor monitor(PowerCircuitBase circuit) {
+        return new ConvergenceMonitor(() -> circuit.control.controlTimer.getNextCycleStart())
+                .track(() -> circuit.control.setPoint());
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private void apply(PowerCircuitBase circuit, List<OptimizationParameter> parameters, double[] point) {
         for (int i = 0; i < point.length; i++) {
@@ -57,38 +197,447 @@ public class Optimizer {
             List<OptimizationParameter<TControl>> parameters,
             List<Supplier<TCircuit>> circuitSuppliers) {
         Simulator sim = new Simulator();
-        // PowellOptimizer opt = new PowellOptimizer(1e-3, 1e-8);
-        var opt = new CMAESOptimizer(10000, 0, false, 10, 10, new JDKRandomGenerator(0), false,
-                new SimplePointChecker<>(1e-3, -1));
-        var pool = Executors.newFixedThreadPool(8);
+        var steadyStateFinder = new SteadyStateFinder(sim);
+        var cma = new CmaEs(parameters.stream().mapToDouble(x -> x.initialGuess).toArray(),
+                parameters.stream().mapToDouble(x -> x.sigma).toArray(),
+                parameters.stream().mapToDouble(x -> x.lowerBound).toArray(),
+                parameters.stream().mapToDouble(x -> x.upperBound).toArray(), populationSize, 0);
+        var ownPool = executor == null ? Executors.newFixedThreadPool(threads) : null;
+        Executor pool = ownPool == null ? executor : ownPool;
+        var cache = sharedCache != null ? sharedCache
+                : cacheFile == null ? null : new EvaluationCache(cacheFile, cacheSize);
+        var closeables = new ArrayList<AutoCloseable>();
+        if (sharedCache == null)
+            closeables.add(cache);
         try {
-            var result = opt.optimize(GoalType.MINIMIZE, new ObjectiveFunction(new MultivariateFunction() {
-
-                @Override
-                public double value(double[] point) {
-                    return circuitSuppliers.stream().map(circuitSupplier -> pool.submit(() -> {
-                        var circuit = circuitSupplier.get();
-                        apply(circuit, (List) parameters, point);
-                        sim.simulate(circuit, circuit.control.simulationDuration());
-                        return circuit.costCalculator.totalCost;
-                    })).toList().stream().collect(Collectors.summingDouble(x -> {
-                        try {
-                            return x.get();
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }));
-                }
-            }), new InitialGuess(
-                    parameters.stream().mapToDouble(x -> x.initialGuess).toArray()),
-                    new MaxIter(1000), new MaxEval(1000),
-                    new CMAESOptimizer.PopulationSize(30),
-                    new CMAESOptimizer.Sigma(parameters.stream().mapToDouble(x -> x.sigma).toArray()),
-                    new SimpleBounds(parameters.stream().mapToDouble(x -> x.lowerBound).toArray(),
-                            parameters.stream().mapToDouble(x -> x.upperBound).toArray()));
-            return circuit -> apply(circuit, (List) parameters, result.getPoint());
+            var scenarioKeys = cache == null ? null : scenarioKeys(parameters, circuitSuppliers);
+            if (workers > 0 && scenarioSource == null)
+                throw new IllegalStateException(
+                        "Optimizer.workers is set, but there is no scenarioSource to create the scenarios in the workers");
+            var parameterNames = parameters.stream().map(x -> x.name).toList();
+            var sourceIndexes = workers > 0 ? sourceIndexes(circuitSuppliers, parameterNames) : null;
+            var workerPool = workers > 0
+                    ? new WorkerPool(workers, scenarioSource, skipSteadyState, stopAtSteadyState, parameterNames,
+                            workerJvmArgs)
+                    : null;
+            closeables.add(workerPool);
+            Evaluator evaluator = (point, scenarios, budget) -> {
+                var keys = cache == null ? null
+                        : scenarios.stream()
+                                .map(i -> EvaluationCache.hash(scenarioKeys.get(i), Arrays.toString(point)))
+                                .toList();
+                if (workerPool != null)
+                    return remoteTotalCost(workerPool, scenarios.stream().map(sourceIndexes::get).toList(), point,
+                            cache, keys);
+                var circuits = scenarios.stream().map(i -> {
+                    var circuit = circuitSuppliers.get(i).get();
+                    apply(circuit, (List) parameters, point);
+                    return circuit;
+                }).toList();
+                return totalCost(sim, steadyStateFinder, circuits, cache, keys, budget, pool);
+            };
+
+            var screening = screeningStride > 1 ? screeningScenarios(sim, circuitSuppliers)
+                    : IntStream.range(0, circuitSuppliers.size()).boxed().toList();
+            var remaining = IntStream.range(0, circuitSuppliers.size()).boxed()
+                    .filter(i -> !screening.contains(i)).toList();
+            boolean screen = !remaining.isEmpty();
+
+            if (surrogate) {
+                var best = surrogateSearch(parameters, evaluator, IntStream.range(0, circuitSuppliers.size()).boxed()
+                        .toList(), cache);
+                return circuit -> apply(circuit, (List) parameters, best);
+            }
+
+            while (cma.getEvaluations() < maxEvaluations) {
+                var points = cma.ask();
+                if (cache != null)
+                    for (var point : points)
+                        quantize(parameters, point);
+                var values = evaluateGeneration(cma, evaluator, points, screen ? screening : List.of(),
+                        screen ? remaining : screening);
+                cma.tell(points, values);
+                generationCompleted.accept(cma);
+                if (cache != null)
+                    cache.flush();
+                if (cma.hasConverged(1e-3))
+                    break;
+            }
+            var best = cma.getBestPoint();
+            return circuit -> apply(circuit, (List) parameters, best);
         } finally {
-            pool.shutdownNow();
+            if (ownPool != null)
+                ownPool.shutdownNow();
+            for (var closeable : closeables) {
+                if (closeable != null)
+                    try {
+                        closeable.close();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+            }
+        }
+    }
+
+    private double[] surrogateSearch(List<? extends OptimizationParameter<?>> parameters, Evaluator evaluator,
+            List<Integer> scenarios, EvaluationCache cache) {
+        var search = new SurrogateSearch(parameters.stream().mapToDouble(x -> x.initialGuess).toArray(),
+                parameters.stream().mapToDouble(x -> x.sigma).toArray(),
+                parameters.stream().mapToDouble(x -> x.lowerBound).toArray(),
+                parameters.stream().mapToDouble(x -> x.upperBound).toArray(), 2 * parameters.size() + 2, 0);
+        while (search.getEvaluations() < surrogateEvaluations) {
+            var points = search.ask(
+                    (int) Math.min(surrogateBatchSize, surrogateEvaluations - search.getEvaluations()));
+            if (cache != null)
+                for (var point : points)
+                    quantize(parameters, point);
+            var costs = new ArrayList<CompletableFuture<Double>>();
+            for (var point : points)
+                costs.add(evaluator.evaluate(point, scenarios, null));
+            search.tell(points, costs.stream().mapToDouble(Optimizer::join).toArray());
+            if (cache != null)
+                cache.flush();
+        }
+        return search.getBestPoint();
+    }
+
+    /**
+     * Index of each scenario within the {@link #scenarioSource}, matched by the
+     * configuration of the created circuits. Checks that the parameters can be
+     * resolved by the workers.
+     */
+    private List<Integer> sourceIndexes(List<? extends Supplier<? extends PowerCircuitBase>> circuitSuppliers,
+            List<String> parameterNames) {
+        Map<String, Integer> sourceIndexes = new HashMap<>();
+        List<? extends Supplier<? extends PowerCircuitBase>> sources;
+        try {
+            sources = scenarioSource.getConstructor().newInstance().createCircuits();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to create scenario source " + scenarioSource, e);
+        }
+        for (int i = 0; i < sources.size(); i++)
+            sourceIndexes.putIfAbsent(EvaluationCache.fingerprint(sources.get(i).get()), i);
+        return circuitSuppliers.stream().map(supplier -> {
+            var circuit = supplier.get();
+            resolveParameters(circuit, parameterNames);
+            var index = sourceIndexes.get(EvaluationCache.fingerprint(circuit));
+            if (index == null)
+                throw new IllegalStateException("Scenario not provided by " + scenarioSource.getName());
+            return index;
+        }).toList();
+    }
+
+    /**
+     * The {@link ControlBase#optimizationParameters()} of a circuit with the given
+     * names, in the same order
+     */
+    private static List<? extends OptimizationParameter<?>> resolveParameters(PowerCircuitBase circuit,
+            List<String> names) {
+        var available = circuit.control.optimizationParameters();
+        return names.stream().map(name -> available.stream().filter(x -> x.name.equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalStateException("Optimization parameter " + name + " not provided by "
+                        + circuit.control.getClass().getName())))
+                .toList();
+    }
+
+    /**
+     * Total cost of a scenario, applying the point to the
+     * {@link ControlBase#optimizationParameters()} with the given names. Used by
+     * the {@link Worker}s.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    double cost(Supplier<? extends PowerCircuitBase> scenario, List<String> parameterNames, double[] point) {
+        if (point.length != parameterNames.size())
+            throw new IllegalArgumentException(
+                    "Expected " + parameterNames.size() + " coordinates, got " + point.length);
+        var sim = new Simulator();
+        var circuit = scenario.get();
+        apply(circuit, (List) resolveParameters(circuit, parameterNames), point);
+        var monitor = stopAtSteadyState ? monitor(circuit) : null;
+        if (circuit.forkKey == null)
+            sim.simulate(circuit, circuit.control.simulationDuration(), monitor, null);
+        else {
+            // simulate the prefix like in totalCost(), but without sharing it
+            var leader = scenario.get();
+            apply(leader, (List) resolveParameters(leader, parameterNames), point);
+            var snapshot = skipSteadyState
+                    ? new SteadyStateFinder(sim).simulatePrefix(leader, leader.control.simulationDuration(),
+                            leader.forkTime, () -> leader.control.controlTimer.getNextCycleStart(),
+                            leader.control.steadyStateValues())
+                    : sim.simulatePrefix(leader, leader.control.simulationDuration(), leader.forkTime);
+            sim.simulateFrom(circuit, circuit.control.simulationDuration(), List.of(), snapshot, monitor);
+        }
+        return circuit.costCalculator.totalCost;
+    }
+
+    /**
+     * Like {@link #totalCost}, but the scenarios are simulated by the workers
+     */
+    private CompletableFuture<Double> remoteTotalCost(WorkerPool workerPool, List<Integer> sourceIndexes,
+            double[] point, EvaluationCache cache, List<String> keys) {
+        var costs = new ArrayList<CompletableFuture<Double>>();
+        for (int i = 0; i < sourceIndexes.size(); i++) {
+            var cached = cache == null ? null : cache.get(keys.get(i));
+            if (cached != null) {
+                costs.add(CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            var key = cache == null ? null : keys.get(i);
+            costs.add(workerPool.submit(sourceIndexes.get(i), point).thenApply(cost -> {
+                if (key != null)
+                    cache.put(key, cost);
+                return cost;
+            }));
+        }
+        return CompletableFuture.allOf(costs.toArray(CompletableFuture[]::new))
+                .thenApply(x -> costs.stream().mapToDouble(c -> c.join()).sum());
+    }
+
+    /**
+     * Select the screening scenarios, stratified by {@link Circuit#forkKey}: every
+     * fork group contributes every {@link #screeningStride}-th of its scenarios,
+     * at least one. The start offset rotates from group to group, such that the
+     * events at all positions within the groups are screened as well.
+     */
+    private List<Integer> screeningScenarios(Simulator sim,
+            List<? extends Supplier<? extends PowerCircuitBase>> circuitSuppliers) {
+        var circuits = new ArrayList<PowerCircuitBase>();
+        for (var supplier : circuitSuppliers)
+            circuits.add(supplier.get());
+        var result = new ArrayList<Integer>();
+        var groups = sim.forkGroups(circuits);
+        for (int g = 0; g < groups.size(); g++) {
+            var group = groups.get(g);
+            int offset = (screeningStride - g % screeningStride) % screeningStride;
+            if (offset >= group.size())
+                offset = g % group.size();
+            for (int p = offset; p < group.size(); p += screeningStride)
+                result.add(circuits.indexOf(group.get(p)));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private interface Evaluator {
+        /**
+         * Total cost of the given scenarios for a candidate
+         */
+        CompletableFuture<Double> evaluate(double[] point, List<Integer> scenarios, CostBudget budget);
+    }
+
+    /**
+     * Determine the values of the candidates of a generation. All candidates are
+     * evaluated on the screening scenarios, the most promising ones on the
+     * remaining scenarios as well. The values of the other candidates are
+     * estimated from their screening cost, but kept above the values of the
+     * parents, which are thus always evaluated completely.
+     */
+    private double[] evaluateGeneration(CmaEs cma, Evaluator evaluator, double[][] points, List<Integer> screening,
+            List<Integer> remaining) {
+        int count = points.length;
+
+        // submit the simulations of all candidates at once, to keep all threads busy
+        var screeningCosts = new double[count];
+        if (!screening.isEmpty()) {
+            var costs = new ArrayList<CompletableFuture<Double>>();
+            for (var point : points)
+                costs.add(evaluator.evaluate(point, screening, null));
+            for (int i = 0; i < count; i++)
+                screeningCosts[i] = join(costs.get(i));
+        }
+
+        var promoted = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            promoted.add(i);
+        if (!screening.isEmpty()) {
+            promoted.sort(Comparator.comparingDouble(i -> screeningCosts[i]));
+            int promotedCount = Math.max(cma.getParentCount(), (int) Math.ceil(promotedFraction * count));
+            promoted = new ArrayList<>(promoted.subList(0, Math.min(count, promotedCount)));
+        }
+
+        double limit = abortAboveThreshold ? cma.getSelectionThreshold() : Double.POSITIVE_INFINITY;
+        var values = new double[count];
+        var budgets = new CostBudget[count];
+        var costs = new HashMap<Integer, CompletableFuture<Double>>();
+        for (int i : promoted) {
+            if (limit < Double.POSITIVE_INFINITY) {
+                budgets[i] = new CostBudget(limit, c -> ((PowerCircuitBase) c).costCalculator.totalCost);
+                budgets[i].add(screeningCosts[i]);
+            }
+            costs.put(i, evaluator.evaluate(points[i], remaining, budgets[i]));
         }
+        costs.forEach((i, cost) -> values[i] = screeningCosts[i] + join(cost));
+
+        // the values of aborted candidates are lower bounds. If they could be among
+        // the parents, simulate the most promising ones completely
+        while (true) {
+            var retry = missingParents(values, budgets, promoted, cma.getParentCount());
+            if (retry.isEmpty())
+                break;
+            costs.clear();
+            for (int i : retry) {
+                budgets[i] = null;
+                costs.put(i, evaluator.evaluate(points[i], remaining, null));
+            }
+            costs.forEach((i, cost) -> values[i] = screeningCosts[i] + join(cost));
+        }
+
+        if (promoted.size() < count) {
+            // correct the screening cost of the other candidates by the average cost of
+            // the remaining scenarios. Keep the estimates above the parent count-th
+            // completely evaluated candidate, such that no parent is an estimate.
+            double bias = 0;
+            var completed = new ArrayList<Double>();
+            for (int i : promoted) {
+                if (budgets[i] != null && budgets[i].isAborted())
+                    continue;
+                bias += values[i] - screeningCosts[i];
+                completed.add(values[i]);
+            }
+            bias /= completed.size();
+            Collections.sort(completed);
+            double lastParent = completed.get(Math.min(completed.size(), cma.getParentCount()) - 1);
+            var isPromoted = new boolean[count];
+            promoted.forEach(i -> isPromoted[i] = true);
+            for (int i = 0; i < count; i++)
+                if (!isPromoted[i])
+                    values[i] = Math.max(screeningCosts[i] + bias, Math.nextUp(lastParent));
+        }
+        return values;
+    }
+
+    private static double join(CompletableFuture<Double> cost) {
+        try {
+            return cost.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Determine the aborted candidates which have to be simulated completely to
+     * rank the parents of the generation correctly. The completed candidates with
+     * values below the lower bounds of all aborted candidates are certainly
+     * parents. If there are too few of them, the aborted candidates with the
+     * smallest lower bounds are returned.
+     */
+    private static List<Integer> missingParents(double[] values, CostBudget[] budgets, List<Integer> candidates,
+            int parentCount) {
+        var aborted = new ArrayList<Integer>();
+        for (int i : candidates)
+            if (budgets[i] != null && budgets[i].isAborted())
+                aborted.add(i);
+        if (aborted.isEmpty())
+            return List.of();
+        aborted.sort(Comparator.comparingDouble(i -> values[i]));
+        double minAborted = values[aborted.get(0)];
+        int certain = 0;
+        for (int i : candidates)
+            if ((budgets[i] == null || !budgets[i].isAborted()) && values[i] <= minAborted)
+                certain++;
+        return aborted.subList(0, Math.max(0, Math.min(aborted.size(), parentCount - certain)));
+    }
+
+    private void quantize(List<? extends OptimizationParameter<?>> parameters, double[] point) {
+        for (int i = 0; i < point.length; i++) {
+            var parameter = parameters.get(i);
+            double quantum = cacheQuantum * parameter.sigma;
+            point[i] = Math.min(parameter.upperBound,
+                    Math.max(parameter.lowerBound, Math.round(point[i] / quantum) * quantum));
+        }
+    }
+
+    /**
+     * Key of each scenario, covering the configuration of a freshly created
+     * circuit (including the {@link Circuit#parameterValues}), the code of the
+     * simulation, the optimized parameters and the settings of this optimizer.
+     * The code includes all classes of the simulation, shared and boost packages,
+     * and the circuit and element classes.
+     */
+    private List<String> scenarioKeys(List<? extends OptimizationParameter<?>> parameters,
+            List<? extends Supplier<? extends PowerCircuitBase>> circuitSuppliers) {
+        var circuits = circuitSuppliers.stream().map(Supplier::get).toList();
+        var classes = new LinkedHashSet<Class<?>>(List.of(Simulator.class, SteadyStateFinder.class,
+                ConvergenceMonitor.class, EventQueue.class));
+        for (var circuit : circuits) {
+            classes.add(circuit.getClass());
+            circuit.elements.forEach(e -> classes.add(e.getClass()));
+        }
+        var code = EvaluationCache.hash(EvaluationCache.codeFingerprint(classes),
+                EvaluationCache.packageFingerprint(
+                        List.of(Simulator.class, PowerCircuitBase.class, ControlBase.class)));
+        // the apply functions are not hashed, they are identified by the name
+        var parameterKey = EvaluationCache.hash(parameters.stream()
+                .map(p -> p.name + " " + p.lowerBound + " " + p.upperBound + " " + p.sigma).toArray());
+        return circuits.stream().map(circuit -> EvaluationCache.hash(code, parameterKey,
+                EvaluationCache.fingerprint(circuit), skipSteadyState, stopAtSteadyState)).toList();
+    }
+
+    /**
+     * Simulate the circuits of a candidate. The costs of circuits found in the
+     * cache are taken from there. Of the remaining circuits, the common prefix of
+     * each group is simulated once, then the continuations run in parallel. If a
+     * budget is given, the simulations are aborted once it is exceeded and the
+     * result is a lower bound of the cost.
+     */
+    private CompletableFuture<Double> totalCost(Simulator sim, SteadyStateFinder steadyStateFinder,
+            List<? extends PowerCircuitBase> circuits, EvaluationCache cache, List<String> keys, CostBudget budget,
+            Executor pool) {
+        var costs = new ArrayList<CompletableFuture<Double>>();
+        var missing = new ArrayList<PowerCircuitBase>();
+        Map<PowerCircuitBase, String> missingKeys = new IdentityHashMap<>();
+        for (int i = 0; i < circuits.size(); i++) {
+            var circuit = circuits.get(i);
+            var cached = cache == null ? null : cache.get(keys.get(i));
+            if (cached != null) {
+                costs.add(CompletableFuture.completedFuture(cached));
+                if (budget != null)
+                    budget.add(cached);
+            }
+            else {
+                missing.add(circuit);
+                if (cache != null)
+                    missingKeys.put(circuit, keys.get(i));
+            }
+        }
+
+        for (var group : sim.forkGroups(missing)) {
+            if (group.size() == 1) {
+                var circuit = group.get(0);
+                costs.add(CompletableFuture.supplyAsync(() -> {
+                    boolean completed = sim.simulate(circuit, circuit.control.simulationDuration(),
+                            stopAtSteadyState ? monitor(circuit) : null, budget);
+                    return cacheCost(cache, completed ? missingKeys.get(circuit) : null, circuit);
+                }, pool));
+                continue;
+            }
+            var leader = group.get(0);
+            var prefix = CompletableFuture.supplyAsync(() -> {
+                if (skipSteadyState)
+                    return steadyStateFinder.simulatePrefix(leader, leader.control.simulationDuration(),
+                            sim.forkTime(group), () -> leader.control.controlTimer.getNextCycleStart(),
+                            leader.control.steadyStateValues());
+                return sim.simulatePrefix(leader, leader.control.simulationDuration(), sim.forkTime(group));
+            }, pool);
+            for (var circuit : group) {
+                costs.add(prefix.thenApplyAsync(snapshot -> {
+                    boolean completed = sim.simulateFrom(circuit, circuit.control.simulationDuration(), List.of(),
+                            snapshot, stopAtSteadyState ? monitor(circuit) : null, budget);
+                    return cacheCost(cache, completed ? missingKeys.get(circuit) : null, circuit);
+                }, pool));
+            }
+        }
+        return CompletableFuture.allOf(costs.toArray(CompletableFuture[]::new))
+                .thenApply(x -> costs.stream().mapToDouble(c -> c.join()).sum());
+    }
+
+    /**
+     * Return the cost of the circuit and put it to the cache, if a key is given
+     */
+    private double cacheCost(EvaluationCache cache, String key, PowerCircuitBase circuit) {
+        double cost = circuit.costCalculator.totalCost;
+        if (key != null)
+            cache.put(key, cost);
+        return cost;
     }
 }
@@ -0,0 +1,16 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.github.ruediste.digitalSmpsSim.shared.PowerCircuitBase;
+
+/**
+ * Creates the scenarios of an optimization. Used by the {@link Worker}
+ * processes to rebuild the scenarios by index, thus implementations need a
+ * public no-argument constructor and have to create the scenarios in a
+ * deterministic order.
+ */
+public interface ScenarioSource {
+    List<? extends Supplier<? extends PowerCircuitBase>> createCircuits();
+}
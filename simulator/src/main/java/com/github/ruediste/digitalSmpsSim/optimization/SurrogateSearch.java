@@ -0,0 +1,201 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+/**
+ * Surrogate assisted minimization with an ask/tell interface like
+ * {@link CmaEs}. All evaluated points are modeled by a
+ * {@link GaussianProcess}, and the next points are the ones with the maximum
+ * expected improvement according to the model. Intended for expensive
+ * objectives, where the number of evaluations matters more than the effort to
+ * propose the points.
+ *
+ * <p>
+ * The search starts with a latin hypercube design within two sigma of the
+ * initial guess. The model is fitted to the logarithm of the values above the
+ * minimum, which tames the large values of unstable candidates. The
+ * improvement is measured relative to the minimum of the model at the evaluated
+ * points, since the model smooths noisy values. Multiple points
+ * of a batch are proposed by the kriging believer heuristic: after a point is
+ * chosen, the predicted value is added to the model as if it had been observed.
+ */
+public class SurrogateSearch {
+    private static final NormalDistribution normal = new NormalDistribution();
+
+    private final int n;
+    private final double[] sigma;
+    private final double[] lowerBound;
+    private final double[] upperBound;
+    private final Random random;
+
+    private final List<double[]> design = new ArrayList<>();
+    private final List<double[]> points = new ArrayList<>();
+    private final List<Double> values = new ArrayList<>();
+
+    /**
+     * Number of random points at which the expected improvement is evaluated to
+     * propose a point
+     */
+    public int candidates = 2000;
+
+    private double[] bestPoint;
+    private double bestValue = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param sigma typical scale of each coordinate, used for the initial design
+     *              and as unit of the length scales of the model
+     */
+    public SurrogateSearch(double[] initialGuess, double[] sigma, double[] lowerBound, double[] upperBound,
+            int initialPoints, long seed) {
+        n = initialGuess.length;
+        this.sigma = sigma.clone();
+        this.lowerBound = lowerBound.clone();
+        this.upperBound = upperBound.clone();
+        random = new Random(seed);
+
+        design.add(initialGuess.clone());
+        var strata = new int[n][];
+        for (int d = 0; d < n; d++) {
+            var list = new ArrayList<Integer>();
+            for (int i = 0; i < initialPoints - 1; i++)
+                list.add(i);
+            Collections.shuffle(list, random);
+            strata[d] = list.stream().mapToInt(x -> x).toArray();
+        }
+        for (int i = 0; i < initialPoints - 1; i++) {
+            var point = new double[n];
+            for (int d = 0; d < n; d++) {
+                double u = (strata[d][i] + random.nextDouble()) / (initialPoints - 1);
+                point[d] = clip(d, initialGuess[d] + (4 * u - 2) * sigma[d]);
+            }
+            design.add(point);
+        }
+    }
+
+    private double clip(int d, double value) {
+        return Math.min(upperBound[d], Math.max(lowerBound[d], value));
+    }
+
+    /**
+     * Propose the next points to evaluate. Returns less points if the initial
+     * design has not been evaluated yet.
+     */
+    public double[][] ask(int count) {
+        var result = new ArrayList<double[]>();
+        int designed = points.size();
+        while (result.size() < count && designed + result.size() < design.size())
+            result.add(design.get(designed + result.size()));
+        if (result.size() == count || points.isEmpty())
+            return result.toArray(double[][]::new);
+
+        var x = points.toArray(double[][]::new);
+        var y = transformedValues();
+        var gp = GaussianProcess.fit(x, y, sigma);
+        while (result.size() < count) {
+            var model = gp;
+            double best = Arrays.stream(x).mapToDouble(p -> model.predict(p)[0]).min().getAsDouble();
+            var point = maximizeExpectedImprovement(gp, best, x, y);
+            result.add(point);
+            double believed = gp.predict(point)[0];
+            gp = gp.with(point, believed, y);
+            x = Arrays.copyOf(x, x.length + 1);
+            x[x.length - 1] = point;
+            y = Arrays.copyOf(y, y.length + 1);
+            y[y.length - 1] = believed;
+        }
+        return result.toArray(double[][]::new);
+    }
+
+    private double[] transformedValues() {
+        double min = values.stream().mapToDouble(v -> v).min().getAsDouble();
+        var sorted = values.stream().mapToDouble(v -> v).sorted().toArray();
+        double median = sorted[sorted.length / 2];
+        double offset = Math.max(1e-3 * (median - min), 1e-12 * Math.max(1, Math.abs(min)));
+        return values.stream().mapToDouble(v -> Math.log(v - min + offset)).toArray();
+    }
+
+    private double expectedImprovement(GaussianProcess gp, double best, double[] point) {
+        var prediction = gp.predict(point);
+        double std = Math.sqrt(prediction[1]);
+        if (std < 1e-12)
+            return Math.max(0, best - prediction[0]);
+        double z = (best - prediction[0]) / std;
+        return (best - prediction[0]) * normal.cumulativeProbability(z) + std * normal.density(z);
+    }
+
+    private double[] maximizeExpectedImprovement(GaussianProcess gp, double best, double[][] x, double[] y) {
+        // start with random points, half of them uniform within the bounds, half of
+        // them close to the best points
+        var order = IntStream.range(0, y.length).boxed().sorted(Comparator.comparingDouble(i -> y[i]))
+                .mapToInt(i -> i).toArray();
+        var lengthScales = gp.lengthScales();
+        double[] bestCandidate = null;
+        double bestEi = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < candidates; c++) {
+            var point = new double[n];
+            if (c % 2 == 0) {
+                for (int d = 0; d < n; d++)
+                    point[d] = lowerBound[d] + random.nextDouble() * (upperBound[d] - lowerBound[d]);
+            } else {
+                var center = x[order[random.nextInt(Math.min(5, order.length))]];
+                double scale = Math.pow(10, -random.nextDouble() * 2);
+                for (int d = 0; d < n; d++)
+                    point[d] = clip(d, center[d] + scale * lengthScales[d] * random.nextGaussian());
+            }
+            double ei = expectedImprovement(gp, best, point);
+            if (ei > bestEi) {
+                bestEi = ei;
+                bestCandidate = point;
+            }
+        }
+
+        // refine locally
+        double scale = 0.1;
+        for (int iteration = 0; iteration < 100; iteration++) {
+            var point = new double[n];
+            for (int d = 0; d < n; d++)
+                point[d] = clip(d, bestCandidate[d] + scale * lengthScales[d] * random.nextGaussian());
+            double ei = expectedImprovement(gp, best, point);
+            if (ei > bestEi) {
+                bestEi = ei;
+                bestCandidate = point;
+            } else if (iteration % 10 == 9)
+                scale /= 2;
+        }
+        return bestCandidate;
+    }
+
+    /**
+     * Add the values of evaluated points to the model
+     */
+    public void tell(double[][] points, double[] values) {
+        for (int i = 0; i < points.length; i++) {
+            this.points.add(points[i].clone());
+            this.values.add(values[i]);
+            if (values[i] < bestValue) {
+                bestValue = values[i];
+                bestPoint = points[i].clone();
+            }
+        }
+    }
+
+    public double[] getBestPoint() {
+        return bestPoint;
+    }
+
+    public double getBestValue() {
+        return bestValue;
+    }
+
+    public long getEvaluations() {
+        return points.size();
+    }
+}
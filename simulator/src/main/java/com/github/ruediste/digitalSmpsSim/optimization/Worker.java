@@ -0,0 +1,63 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Main class of the worker processes started by a {@link WorkerPool}.
+ *
+ * <p>
+ * Arguments: the class name of the {@link ScenarioSource}, followed by
+ * {@link Optimizer#skipSteadyState}, {@link Optimizer#stopAtSteadyState} and
+ * the names of the optimization parameters. Each line read from stdin is a job
+ * consisting of the job id, the index of the scenario and the coordinates of
+ * the point. For each job, a line with the job id and the total cost is written
+ * to stdout, or the job id followed by {@code !} and an error message if the
+ * simulation failed. Everything else written to stdout by the simulation,
+ * including the log, is redirected to stderr.
+ */
+public class Worker {
+    private static final Logger log = LoggerFactory.getLogger(Worker.class);
+
+    public static void main(String[] args) throws Exception {
+        var out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        var source = (ScenarioSource) Class.forName(args[0]).getConstructor().newInstance();
+        var scenarios = source.createCircuits();
+        var optimizer = new Optimizer();
+        optimizer.skipSteadyState = Boolean.parseBoolean(args[1]);
+        optimizer.stopAtSteadyState = Boolean.parseBoolean(args[2]);
+        var parameterNames = List.of(args).subList(3, args.length);
+
+        var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            var parts = line.split(" ");
+            var point = new double[parts.length - 2];
+            for (int i = 0; i < point.length; i++)
+                point[i] = Double.parseDouble(parts[i + 2]);
+            String response;
+            try {
+                response = parts[0] + " " + optimizer.cost(scenarios.get(Integer.parseInt(parts[1])), parameterNames,
+                        point);
+            } catch (Exception e) {
+                log.error("Simulation of job " + parts[0] + " failed", e);
+                response = parts[0] + " ! " + String.valueOf(e).replace('\n', ' ');
+            }
+            out.println(response);
+            out.flush();
+            if (out.checkError())
+                throw new IOException("Unable to write to stdout");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates scenarios in separate {@link Worker} JVMs, each with its own heap.
+ * The jobs are queued and taken by the workers one at a time, over the stdin
+ * and stdout of the worker processes.
+ *
+ * <p>
+ * If a worker process dies, its current job is put back to the front of the
+ * queue and the process is restarted. A job is failed after
+ * {@link #maxAttempts} crashes, and a worker gives up after
+ * {@link #maxRestarts} consecutive crashes without completing a job. Errors
+ * reported by a worker fail the job without retry, since the simulations are
+ * deterministic.
+ */
+public class WorkerPool implements AutoCloseable {
+    private final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static class Job {
+        final long id;
+        final int scenario;
+        final double[] point;
+        final CompletableFuture<Double> result = new CompletableFuture<>();
+        int attempts;
+
+        Job(long id, int scenario, double[] point) {
+            this.id = id;
+            this.scenario = scenario;
+            this.point = point;
+        }
+    }
+
+    private static final Job STOP = new Job(-1, -1, null);
+
+    /**
+     * Number of times a job is started before it fails
+     */
+    public int maxAttempts = 3;
+
+    /**
+     * Number of consecutive restarts of a worker without completing a job, after
+     * which the worker is abandoned
+     */
+    public int maxRestarts = 3;
+
+    private final List<String> command;
+    private final LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * @param parameterNames names of the optimization parameters corresponding to
+     *                       the coordinates of the submitted points
+     * @param jvmArgs        additional arguments of the worker JVMs, for example
+     *                       the heap size
+     */
+    public WorkerPool(int workers, Class<? extends ScenarioSource> source, boolean skipSteadyState,
+            boolean stopAtSteadyState, List<String> parameterNames, List<String> jvmArgs) {
+        command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Worker.class.getName());
+        command.add(source.getName());
+        command.add(String.valueOf(skipSteadyState));
+        command.add(String.valueOf(stopAtSteadyState));
+        command.addAll(parameterNames);
+
+        for (int i = 0; i < workers; i++) {
+            int index = i;
+            var thread = new Thread(() -> runWorker(index), "worker-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            runningWorkers.incrementAndGet();
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * Evaluate the total cost of a scenario of the {@link ScenarioSource} with the
+     * given point
+     */
+    public CompletableFuture<Double> submit(int scenario, double[] point) {
+        var job = new Job(nextId.getAndIncrement(), scenario, point.clone());
+        if (runningWorkers.get() == 0 || closed)
+            job.result.completeExceptionally(new IllegalStateException("No workers available"));
+        else
+            queue.add(job);
+        return job.result;
+    }
+
+    private Process startProcess() throws IOException {
+        var process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        synchronized (processes) {
+            processes.add(process);
+        }
+        return process;
+    }
+
+    private void runWorker(int index) {
+        int restarts = 0;
+        try {
+            while (!closed && restarts <= maxRestarts) {
+                Process process;
+                try {
+                    process = startProcess();
+                } catch (IOException e) {
+                    log.error("Unable to start worker " + index, e);
+                    restarts++;
+                    continue;
+                }
+                Job job = null;
+                try (var in = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                        Writer out = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                    while (true) {
+                        job = queue.take();
+                        if (job == STOP)
+                            return;
+                        job.attempts++;
+                        var sb = new StringBuilder().append(job.id).append(' ').append(job.scenario);
+                        for (var x : job.point)
+                            sb.append(' ').append(x);
+                        out.write(sb.append('\n').toString());
+                        out.flush();
+
+                        var line = in.readLine();
+                        if (line == null)
+                            throw new IOException("Worker terminated");
+                        var parts = line.split(" ", 3);
+                        if (Long.parseLong(parts[0]) != job.id)
+                            throw new IOException("Unexpected response " + line);
+                        if ("!".equals(parts[1]))
+                            job.result.completeExceptionally(
+                                    new RuntimeException("Worker failed: " + (parts.length > 2 ? parts[2] : "")));
+                        else
+                            job.result.complete(Double.parseDouble(parts[1]));
+                        job = null;
+                        restarts = 0;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (closed) {
+                        if (job != null)
+                            job.result.completeExceptionally(new IllegalStateException("Worker pool closed"));
+                        return;
+                    }
+                    log.warn("Worker " + index + " crashed, restarting", e);
+                    restarts++;
+                    if (job != null) {
+                        if (job.attempts >= maxAttempts)
+                            job.result.completeExceptionally(
+                                    new RuntimeException("Job failed after " + job.attempts + " attempts", e));
+                        else
+                            queue.addFirst(job);
+                    }
+                } finally {
+                    process.destroyForcibly();
+                }
+            }
+            if (!closed)
+                log.error("Worker " + index + " abandoned after " + restarts + " restarts");
+        } catch (InterruptedException e) {
+            // closed
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+                // nobody left to process the queue
+                Job job;
+                while ((job = queue.poll()) != null)
+                    job.result.completeExceptionally(new IllegalStateException("No workers available"));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < threads.size(); i++)
+            queue.add(STOP);
+        for (var thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (processes) {
+            processes.forEach(Process::destroyForcibly);
+        }
+    }
+}
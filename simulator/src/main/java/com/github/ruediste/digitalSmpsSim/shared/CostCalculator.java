@@ -1,6 +1,7 @@
 package com.github.ruediste.digitalSmpsSim.shared;
 
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
 
 public class CostCalculator extends CircuitElement {
     private PowerCircuitBase circuit;
@@ -61,6 +62,32 @@ public class CostCalculator extends CircuitElement {
         lastSetpoint = circuit.control.setPoint();
     }
 
+    /**
+     * The cost is weighted differently before the settle start
+     */
+    @Override
+    public double stationaryFrom() {
+        return settleStart;
+    }
+
+    @Override
+    public void saveState(CircuitSnapshot.Writer out) {
+        out.writeAccumulator(totalCost);
+        out.writeDouble(currentCost);
+        out.writeDouble(avgOutputVoltage);
+        out.writeDouble(lastSetpoint);
+        out.writeDouble(maxError2);
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        totalCost = in.readAccumulator();
+        currentCost = in.readDouble();
+        avgOutputVoltage = in.readDouble();
+        lastSetpoint = in.readDouble();
+        maxError2 = in.readDouble();
+    }
+
     @Override
     public void finish() {
         totalCost += kMaxError2 * maxError2;
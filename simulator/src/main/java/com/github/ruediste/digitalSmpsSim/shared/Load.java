@@ -1,7 +1,8 @@
 package com.github.ruediste.digitalSmpsSim.shared;
 
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
-import com.github.ruediste.digitalSmpsSim.simulation.StepChangingValue;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleStepChangingValue;
 
 public class Load extends CircuitElement {
 
@@ -12,16 +13,39 @@ public class Load extends CircuitElement {
         this.circuit = circuit;
     }
 
-    public StepChangingValue<Double> resistance = new StepChangingValue<>();
+    public DoubleStepChangingValue resistance = new DoubleStepChangingValue();
+
+    private double nextResistanceChange;
 
     @Override
     public void initialize() {
-        circuit.loadCurrent.set(0.);
+        circuit.loadCurrent.set(0);
+    }
+
+    @Override
+    public void postInitialize() {
+        nextResistanceChange = resistance.nextChangeTime(0);
+        scheduleEvent(nextResistanceChange);
     }
 
     @Override
     public void run(double stepStart, double stepEnd, double stepDuration) {
         circuit.loadCurrent.set(calculateCurrent(circuit.outputVoltage.get(), stepEnd));
+        if (stepEnd >= nextResistanceChange) {
+            nextResistanceChange = resistance.nextChangeTime(stepEnd);
+            scheduleEvent(nextResistanceChange);
+        }
+    }
+
+    @Override
+    public double stationaryFrom() {
+        return resistance.lastChangeTime();
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        nextResistanceChange = resistance.nextChangeTime(instant);
+        scheduleEvent(nextResistanceChange);
     }
 
     public double calculateCurrent(double voltage, double instant) {
@@ -2,7 +2,8 @@ package com.github.ruediste.digitalSmpsSim.shared;
 
 import com.github.ruediste.digitalSmpsSim.boost.ControlBase;
 import com.github.ruediste.digitalSmpsSim.simulation.Circuit;
-import com.github.ruediste.digitalSmpsSim.simulation.SimulationValue;
+import com.github.ruediste.digitalSmpsSim.simulation.BooleanSimulationValue;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleSimulationValue;
 
 public class PowerCircuitBase extends Circuit {
 
@@ -11,9 +12,9 @@ public class PowerCircuitBase extends Circuit {
     public ControlBase<?> control;
     public CostCalculator costCalculator = new CostCalculator(this);
 
-    public SimulationValue<Boolean> switchOn = new SimulationValue<>(this, false);
-    public SimulationValue<Double> inputVoltage = new SimulationValue<>(this, 0.);
-    public SimulationValue<Double> loadCurrent = new SimulationValue<>(this, 0.);
-    public SimulationValue<Double> outputVoltage = new SimulationValue<>(this, 0.);
-    public SimulationValue<Double> inductorCurrent = new SimulationValue<>(this, 0.);
+    public BooleanSimulationValue switchOn = new BooleanSimulationValue(this, "switchOn", false);
+    public DoubleSimulationValue inputVoltage = new DoubleSimulationValue(this, "inputVoltage", 0);
+    public DoubleSimulationValue loadCurrent = new DoubleSimulationValue(this, "loadCurrent", 0);
+    public DoubleSimulationValue outputVoltage = new DoubleSimulationValue(this, "outputVoltage", 0);
+    public DoubleSimulationValue inductorCurrent = new DoubleSimulationValue(this, "inductorCurrent", 0);
 }
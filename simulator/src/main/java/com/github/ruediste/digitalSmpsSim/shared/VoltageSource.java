@@ -1,7 +1,8 @@
 package com.github.ruediste.digitalSmpsSim.shared;
 
 import com.github.ruediste.digitalSmpsSim.simulation.CircuitElement;
-import com.github.ruediste.digitalSmpsSim.simulation.StepChangingValue;
+import com.github.ruediste.digitalSmpsSim.simulation.CircuitSnapshot;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleStepChangingValue;
 
 public class VoltageSource extends CircuitElement {
     private PowerCircuitBase circuit;
@@ -11,14 +12,36 @@ public class VoltageSource extends CircuitElement {
         this.circuit = circuit;
     }
 
-    public StepChangingValue<Double> voltage = new StepChangingValue<>();
+    public DoubleStepChangingValue voltage = new DoubleStepChangingValue();
 
     @Override
     public void initialize() {
     }
 
+    @Override
+    public void postInitialize() {
+        circuit.inputVoltage.set(voltage.get(0));
+        scheduleEvent(voltage.nextChangeTime(0));
+    }
+
+    @Override
+    public boolean isContinuous() {
+        return false;
+    }
+
     @Override
     public void run(double stepStart, double stepEnd, double stepDuration) {
         circuit.inputVoltage.set(voltage.get(stepEnd));
+        scheduleEvent(voltage.nextChangeTime(stepEnd));
+    }
+
+    @Override
+    public double stationaryFrom() {
+        return voltage.lastChangeTime();
+    }
+
+    @Override
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+        scheduleEvent(voltage.nextChangeTime(instant));
     }
 }
@@ -0,0 +1,36 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+/**
+ * {@link SimulationValue} specialized for primitive booleans, to avoid boxing in
+ * the simulation loop. The value is stored as 0 or 1 in the
+ * {@link CircuitState} of the circuit.
+ */
+public class BooleanSimulationValue {
+    private final CircuitState state;
+    private final int index;
+
+    public BooleanSimulationValue(Circuit circuit, boolean initial) {
+        this(circuit, null, initial);
+    }
+
+    /**
+     * @param name name of the value, used when tracing the circuit state
+     */
+    public BooleanSimulationValue(Circuit circuit, String name, boolean initial) {
+        this.state = circuit.state;
+        this.index = state.allocate(name, initial ? 1 : 0);
+    }
+
+    public boolean get() {
+        return state.current[index] != 0;
+    }
+
+    public void set(boolean nextValue) {
+        state.next[index] = nextValue ? 1 : 0;
+    }
+
+    public void initialize(boolean value) {
+        state.current[index] = value ? 1 : 0;
+        state.next[index] = value ? 1 : 0;
+    }
+}
@@ -13,21 +13,86 @@ public class Circuit {
 
     public List<CircuitElement> elements = new ArrayList<>();
     public List<SimulationValue<?>> values = new ArrayList<>();
-    public List<Runnable> withUpdatedValues = new ArrayList<>();
+    public final CircuitState state = new CircuitState();
+
+    /**
+     * Actions run after the values of a step have been propagated, see
+     * {@link #registerDeferredAction}
+     */
+    private final List<Runnable> deferredActions = new ArrayList<>();
+
+    /**
+     * Bit i is set if the deferred action i is scheduled for the current step
+     */
+    private long scheduledDeferredActions;
+    public EventQueue events = new EventQueue();
+
+    /**
+     * Circuits with equal fork keys behave identically before their
+     * {@link #forkTime}, and can thus share the simulation of this prefix. Null if
+     * the circuit cannot be forked.
+     */
+    public Object forkKey;
+
+    /**
+     * Instant at which the circuit starts to differ from the other circuits with
+     * the same {@link #forkKey}
+     */
+    public double forkTime;
+
+    /**
+     * Statistics of the last simulation of this circuit, if the
+     * {@link Simulator#collectStatistics simulator collects them}
+     */
+    public SimulationStatistics statistics;
 
     protected void register(CircuitElement element) {
+        element.index = this.elements.size();
         this.elements.add(element);
     }
 
     public void propagateValues() {
-        values.forEach(v -> v.transferNextValue());
+        state.propagate();
+        for (int i = 0; i < values.size(); i++)
+            values.get(i).transferNextValue();
     }
 
     public void initialize() {
     }
 
-    public void withUpdatedValues(Runnable run) {
-        this.withUpdatedValues.add(run);
+    /**
+     * Register an action which can be scheduled by {@link #withUpdatedValues(int)}
+     * without allocating anything during the simulation. At most 64 actions can
+     * be registered.
+     *
+     * @return slot of the action
+     */
+    public int registerDeferredAction(Runnable action) {
+        if (deferredActions.size() == Long.SIZE)
+            throw new IllegalStateException("Too many deferred actions");
+        deferredActions.add(action);
+        return deferredActions.size() - 1;
+    }
+
+    /**
+     * Run the action of the slot once the values of the current step have been
+     * propagated. Scheduling a slot multiple times during a step runs the action
+     * once.
+     */
+    public void withUpdatedValues(int slot) {
+        scheduledDeferredActions |= 1L << slot;
+    }
+
+    /**
+     * Run the scheduled deferred actions in the order of their slots. Actions
+     * scheduled by the actions themselves are run as well.
+     */
+    public void runDeferredActions() {
+        while (scheduledDeferredActions != 0) {
+            int slot = Long.numberOfTrailingZeros(scheduledDeferredActions);
+            scheduledDeferredActions &= ~(1L << slot);
+            deferredActions.get(slot).run();
+        }
     }
 
     public void addParameterValue(CircuitParameterAxis axis, Object value, String label) {
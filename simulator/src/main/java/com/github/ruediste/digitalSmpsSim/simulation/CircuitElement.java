@@ -4,6 +4,16 @@ public abstract class CircuitElement {
 
     public Circuit circuit;
 
+    /**
+     * Position in {@link Circuit#elements}. Elements run in this order within a
+     * step.
+     */
+    int index;
+
+    int eventQueueIndex = -1;
+    double eventTime = Double.POSITIVE_INFINITY;
+    boolean runInNextStep;
+
     protected CircuitElement(Circuit circuit) {
         this.circuit = circuit;
         circuit.register(this);
@@ -18,11 +28,75 @@ public abstract class CircuitElement {
     public void finish() {
     }
 
-    public Double stepEndTime(double stepStart) {
-        return null;
+    /**
+     * If true, {@link #run} is invoked for every step. Otherwise the element is
+     * only run in steps ending at or after the event it scheduled.
+     */
+    public boolean isContinuous() {
+        return true;
+    }
+
+    /**
+     * Invoked on continuous elements after the values have been propagated at the
+     * end of each step, and once after initialization. Allows to schedule events
+     * depending on the values of other elements.
+     */
+    public void valuesPropagated(double instant) {
+    }
+
+    /**
+     * Schedule the next event of this element, replacing the previously scheduled
+     * one. The simulator will end a step at the given instant. Scheduling an
+     * instant which is not after the current time runs the element in the next
+     * step, without limiting its duration.
+     */
+    protected final void scheduleEvent(double instant) {
+        circuit.events.schedule(this, instant);
+    }
+
+    /**
+     * Run this element in the next step, in addition to the scheduled event.
+     */
+    protected final void runInNextStep() {
+        circuit.events.runInNextStep(this);
+    }
+
+    protected final void cancelEvent() {
+        circuit.events.cancel(this);
+    }
+
+    /**
+     * Instant of the currently scheduled event, or infinity if there is none
+     */
+    public double scheduledEventTime() {
+        return eventTime;
     }
 
     public void run(double stepStart, double stepEnd, double stepDuration) {
 
     }
+
+    /**
+     * Instant from which on the behavior of this element does not depend on the
+     * time anymore, for example after the last change of a configured value. Used
+     * to determine when a steady state can be extrapolated.
+     */
+    public double stationaryFrom() {
+        return 0;
+    }
+
+    /**
+     * Write the dynamic state of this element to a snapshot. The configuration of
+     * the element is not part of the state.
+     */
+    public void saveState(CircuitSnapshot.Writer out) {
+    }
+
+    /**
+     * Read the state written by {@link #saveState}. Event driven elements have to
+     * schedule their next event after the given instant again. Continuous
+     * elements are notified by {@link #valuesPropagated} afterwards.
+     */
+    public void restoreState(CircuitSnapshot.Reader in, double instant) {
+    }
 }
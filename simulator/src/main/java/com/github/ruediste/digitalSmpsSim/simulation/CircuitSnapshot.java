@@ -0,0 +1,155 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * State of a running simulation at a step boundary. Created by
+ * {@link Simulator#snapshot(SimulationRun)} and restored into a circuit with
+ * the same structure by {@link Simulator#restore(SimulationRun, CircuitSnapshot)}.
+ * The configuration of the target circuit (parameters, step changing values)
+ * is kept, only the dynamic state is replaced.
+ *
+ * <p>
+ * Elements write their state using a {@link Writer} and read it back in the
+ * same order with a {@link Reader}. Instants are stored relative to the time of
+ * the snapshot and accumulated quantities are kept apart, which allows to
+ * {@link #extrapolate} a periodic steady state.
+ */
+public class CircuitSnapshot {
+    final double time;
+    final long stepCount;
+    final double[] values;
+
+    private double[] doubles = new double[16];
+    private int doubleCount;
+    private double[] accumulators = new double[4];
+    private int accumulatorCount;
+    private final List<Object> objects = new ArrayList<>();
+
+    CircuitSnapshot(double time, long stepCount, double[] values) {
+        this.time = time;
+        this.stepCount = stepCount;
+        this.values = values;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public class Writer {
+        private Writer() {
+        }
+
+        public void writeDouble(double value) {
+            if (doubleCount == doubles.length)
+                doubles = Arrays.copyOf(doubles, doubleCount * 2);
+            doubles[doubleCount++] = value;
+        }
+
+        /**
+         * Write an instant. It is stored relative to the time of the snapshot.
+         */
+        public void writeInstant(double instant) {
+            writeDouble(instant - time);
+        }
+
+        /**
+         * Write a quantity which is accumulated over time, like a total cost. It is
+         * not part of the periodic state.
+         */
+        public void writeAccumulator(double value) {
+            if (accumulatorCount == accumulators.length)
+                accumulators = Arrays.copyOf(accumulators, accumulatorCount * 2);
+            accumulators[accumulatorCount++] = value;
+        }
+
+        public void writeLong(long value) {
+            objects.add(value);
+        }
+
+        public void writeInt(int value) {
+            writeDouble(value);
+        }
+
+        public void writeBoolean(boolean value) {
+            writeDouble(value ? 1 : 0);
+        }
+
+        /**
+         * Write an object. Mutable objects have to be copied, since the snapshot can
+         * be restored multiple times.
+         */
+        public void writeObject(Object value) {
+            objects.add(value);
+        }
+    }
+
+    public class Reader {
+        private int doubleIndex;
+        private int accumulatorIndex;
+        private int objectIndex;
+
+        private Reader() {
+        }
+
+        public double readDouble() {
+            return doubles[doubleIndex++];
+        }
+
+        public double readInstant() {
+            return readDouble() + time;
+        }
+
+        public double readAccumulator() {
+            return accumulators[accumulatorIndex++];
+        }
+
+        public long readLong() {
+            return (Long) objects.get(objectIndex++);
+        }
+
+        public int readInt() {
+            return (int) readDouble();
+        }
+
+        public boolean readBoolean() {
+            return readDouble() != 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T readObject() {
+            return (T) objects.get(objectIndex++);
+        }
+    }
+
+    Writer writer() {
+        return new Writer();
+    }
+
+    Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Assuming the circuit is in a periodic steady state, with the previous
+     * snapshot taken any whole number of periods before this one, create the
+     * snapshot at a later instant. The instant has to be a whole number of periods
+     * after this snapshot. The state is repeated, while the accumulators and the
+     * step count keep growing at their average rate between the two snapshots.
+     */
+    public CircuitSnapshot extrapolate(CircuitSnapshot previous, double instant) {
+        double periods = (instant - time) / (time - previous.time);
+        var result = new CircuitSnapshot(instant, stepCount + Math.round((stepCount - previous.stepCount) * periods),
+                values);
+        result.doubles = doubles;
+        result.doubleCount = doubleCount;
+        result.accumulators = new double[accumulatorCount];
+        result.accumulatorCount = accumulatorCount;
+        for (int i = 0; i < accumulatorCount; i++)
+            result.accumulators[i] = accumulators[i] + (accumulators[i] - previous.accumulators[i]) * periods;
+        result.objects.addAll(objects);
+        return result;
+    }
+}
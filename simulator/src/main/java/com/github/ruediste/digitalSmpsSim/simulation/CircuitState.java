@@ -0,0 +1,79 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Storage of the {@link DoubleSimulationValue}s and
+ * {@link BooleanSimulationValue}s of a circuit. All values live in two
+ * contiguous arrays, one for the current and one for the next values. Each
+ * simulation value is an index into these arrays.
+ */
+public class CircuitState {
+    double[] current = new double[16];
+    double[] next = new double[16];
+    private String[] names = new String[16];
+    private int size;
+
+    /**
+     * Allocate a slot for a new value
+     *
+     * @param name name of the value, used when tracing the state. If null, a
+     *             name is derived from the index.
+     * @return the index of the slot
+     */
+    int allocate(String name, double initial) {
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        current[size] = initial;
+        next[size] = initial;
+        names[size] = name == null ? "value" + size : name;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Name of the value in the given slot
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Current value in the given slot
+     */
+    public double get(int index) {
+        return current[index];
+    }
+
+    /**
+     * Make the next values the current values. The arrays are copied rather than
+     * swapped, since values which are not set during a step keep their value.
+     */
+    public void propagate() {
+        System.arraycopy(next, 0, current, 0, size);
+    }
+
+    /**
+     * Return a copy of the current values
+     */
+    public double[] snapshot() {
+        return Arrays.copyOf(current, size);
+    }
+
+    /**
+     * Set the current and next values to the values of a {@link #snapshot()}
+     */
+    public void restore(double[] snapshot) {
+        if (snapshot.length != size)
+            throw new IllegalArgumentException(
+                    "Snapshot contains " + snapshot.length + " values, but the state has " + size + " values");
+        System.arraycopy(snapshot, 0, current, 0, size);
+        System.arraycopy(snapshot, 0, next, 0, size);
+    }
+}
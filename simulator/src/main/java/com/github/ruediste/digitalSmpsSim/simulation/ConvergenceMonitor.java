@@ -0,0 +1,192 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Detects when a simulation has reached a steady state, allowing
+ * {@link Simulator#advance(SimulationRun, double, ConvergenceMonitor)} to skip
+ * the remaining periods.
+ *
+ * <p>
+ * After each step, the values of the {@link CircuitState} and the tracked
+ * values (typically the set point of the controller) are sampled. For a window
+ * of {@link #periods} periods, the envelope (minimum and maximum) and the
+ * average of each value is determined. The simulation is converged once the
+ * statistics of two consecutive windows agree within the tolerances. Only
+ * windows starting after the {@link CircuitElement#stationaryFrom()} instant
+ * of all elements are considered.
+ *
+ * <p>
+ * A monitor can only be used for a single run.
+ */
+public class ConvergenceMonitor {
+    private final DoubleSupplier nextPeriodStart;
+    private final List<DoubleSupplier> tracked = new ArrayList<>();
+
+    /**
+     * Number of periods in a window
+     */
+    public int periods = 40;
+
+    /**
+     * Allowed difference of the statistics, relative to the magnitude of the
+     * value
+     */
+    public double tolerance = 1e-3;
+
+    /**
+     * Allowed difference of the statistics, relative to the range of the value
+     * within the window. Accounts for noise.
+     */
+    public double rangeTolerance = 0.25;
+
+    private Circuit circuit;
+    private double stationaryFrom;
+    private double periodEnd;
+    private int periodCount;
+    private boolean converged;
+
+    private double[] min;
+    private double[] max;
+    private double[] sum;
+    private int samples;
+    private double[] lastMin;
+    private double[] lastMax;
+    private double[] lastMean;
+
+    private CircuitSnapshot previousWindowStart;
+    private CircuitSnapshot windowStart;
+    private CircuitSnapshot windowEnd;
+
+    /**
+     * @param nextPeriodStart instant of the next period start, typically the
+     *                        next reload of the control timer
+     */
+    public ConvergenceMonitor(DoubleSupplier nextPeriodStart) {
+        this.nextPeriodStart = nextPeriodStart;
+    }
+
+    /**
+     * Include a value in the convergence check
+     */
+    public ConvergenceMonitor track(DoubleSupplier value) {
+        tracked.add(value);
+        return this;
+    }
+
+    void start(SimulationRun run) {
+        circuit = run.circuit;
+        stationaryFrom = circuit.elements.stream().mapToDouble(e -> e.stationaryFrom()).max().orElse(0);
+        int size = circuit.state.size() + tracked.size();
+        min = new double[size];
+        max = new double[size];
+        sum = new double[size];
+        periodEnd = nextPeriodStart.getAsDouble();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        Arrays.fill(sum, 0);
+        samples = 0;
+        periodCount = 0;
+    }
+
+    private void sample(int i, double value) {
+        min[i] = Math.min(min[i], value);
+        max[i] = Math.max(max[i], value);
+        sum[i] += value;
+    }
+
+    /**
+     * Invoked after each step
+     *
+     * @return true if the simulation is converged
+     */
+    boolean stepCompleted(Simulator sim, SimulationRun run) {
+        if (converged)
+            return false;
+        var current = circuit.state.current;
+        int stateSize = circuit.state.size();
+        for (int i = 0; i < stateSize; i++)
+            sample(i, current[i]);
+        for (int i = 0; i < tracked.size(); i++)
+            sample(stateSize + i, tracked.get(i).getAsDouble());
+        samples++;
+
+        if (run.time < periodEnd)
+            return false;
+        periodEnd = nextPeriodStart.getAsDouble();
+
+        if (windowStart == null) {
+            // wait for the first period start after which the circuit is stationary
+            if (run.time >= stationaryFrom) {
+                windowStart = sim.snapshot(run);
+                resetWindow();
+            }
+            return false;
+        }
+
+        if (++periodCount < periods)
+            return false;
+
+        // end of a window
+        windowEnd = sim.snapshot(run);
+        var mean = new double[sum.length];
+        for (int i = 0; i < mean.length; i++)
+            mean[i] = sum[i] / samples;
+        if (lastMean != null && repeats(mean)) {
+            converged = true;
+            return true;
+        }
+        lastMin = min.clone();
+        lastMax = max.clone();
+        lastMean = mean;
+        previousWindowStart = windowStart;
+        windowStart = windowEnd;
+        resetWindow();
+        return false;
+    }
+
+    private boolean repeats(double[] mean) {
+        for (int i = 0; i < mean.length; i++) {
+            double allowed = tolerance * Math.max(Math.abs(max[i]), Math.abs(min[i]))
+                    + rangeTolerance * Math.max(max[i] - min[i], lastMax[i] - lastMin[i]);
+            if (Math.abs(min[i] - lastMin[i]) > allowed || Math.abs(max[i] - lastMax[i]) > allowed
+                    || Math.abs(mean[i] - lastMean[i]) > allowed)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Snapshot at the start of the two windows which have been compared, once
+     * converged. The accumulators are extrapolated with their rate between this
+     * snapshot and the {@link #windowEnd()}.
+     */
+    CircuitSnapshot windowsStart() {
+        return previousWindowStart;
+    }
+
+    /**
+     * Snapshot at the end of the last window, once converged
+     */
+    CircuitSnapshot windowEnd() {
+        return windowEnd;
+    }
+
+    /**
+     * Average period length of the compared windows, once converged
+     */
+    double period() {
+        return (windowEnd.time - previousWindowStart.time) / (2 * periods);
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+}
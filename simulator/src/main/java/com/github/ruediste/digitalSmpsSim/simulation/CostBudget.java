@@ -0,0 +1,96 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Limit of the cost accumulated by a set of simulations, typically the
+ * scenarios of an optimization candidate. The runs, possibly in different
+ * threads, report their cost every {@link #interval} steps and are aborted once
+ * the total exceeds the limit. The cost of a circuit has to be non-decreasing
+ * during the simulation, such that the total of an aborted set is a lower bound
+ * of the cost of the completed simulations.
+ */
+public class CostBudget {
+    public final double limit;
+    private final ToDoubleFunction<Circuit> cost;
+    private final DoubleAdder total = new DoubleAdder();
+    private volatile boolean aborted;
+
+    /**
+     * Number of steps between the cost reports of a run
+     */
+    public int interval = 64;
+
+    /**
+     * @param cost current cost of a simulated circuit
+     */
+    public CostBudget(double limit, ToDoubleFunction<Circuit> cost) {
+        this.limit = limit;
+        this.cost = cost;
+    }
+
+    /**
+     * Add the cost of a scenario which is known without simulation
+     */
+    public void add(double cost) {
+        total.add(cost);
+    }
+
+    /**
+     * Cost reported so far
+     */
+    public double total() {
+        return total.sum();
+    }
+
+    public boolean isExceeded() {
+        return total.sum() > limit;
+    }
+
+    /**
+     * True if at least one simulation has been aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    Account open(Circuit circuit) {
+        return new Account(circuit);
+    }
+
+    /**
+     * Reports the cost of a single run
+     */
+    class Account {
+        private final Circuit circuit;
+        private double reported;
+        private int steps;
+
+        Account(Circuit circuit) {
+            this.circuit = circuit;
+        }
+
+        /**
+         * Invoked after each step
+         *
+         * @return true if the run has to be aborted
+         */
+        boolean stepCompleted() {
+            if (++steps < interval)
+                return false;
+            steps = 0;
+            report();
+            if (!isExceeded())
+                return false;
+            aborted = true;
+            return true;
+        }
+
+        void report() {
+            double current = cost.applyAsDouble(circuit);
+            total.add(current - reported);
+            reported = current;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+/**
+ * {@link SimulationValue} specialized for primitive doubles, to avoid boxing in
+ * the simulation loop. The value is stored in the {@link CircuitState} of the
+ * circuit.
+ */
+public class DoubleSimulationValue {
+    private final CircuitState state;
+    private final int index;
+
+    public DoubleSimulationValue(Circuit circuit, double initial) {
+        this(circuit, null, initial);
+    }
+
+    /**
+     * @param name name of the value, used when tracing the circuit state
+     */
+    public DoubleSimulationValue(Circuit circuit, String name, double initial) {
+        this.state = circuit.state;
+        this.index = state.allocate(name, initial);
+    }
+
+    public double get() {
+        return state.current[index];
+    }
+
+    public void set(double nextValue) {
+        state.next[index] = nextValue;
+    }
+
+    public void initialize(double value) {
+        state.current[index] = value;
+        state.next[index] = value;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.Arrays;
+
+/**
+ * {@link StepChangingValue} specialized for primitive doubles. The change
+ * instants and values are kept in sorted arrays. Since the simulation time
+ * only moves forward, lookups start at the entry found by the previous lookup,
+ * making them O(1) amortized.
+ */
+public class DoubleStepChangingValue {
+    private double[] times = new double[4];
+    private double[] values = new double[4];
+    private int size;
+
+    /**
+     * Index of the entry found by the last lookup
+     */
+    private int cursor;
+
+    public void set(double time, double value) {
+        int i = Arrays.binarySearch(times, 0, size, time);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        i = -(i + 1);
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(times, i, times, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        times[i] = time;
+        values[i] = value;
+        size++;
+        cursor = 0;
+    }
+
+    public double get(double time) {
+        if (size == 0 || time < times[0])
+            throw new IllegalStateException("No value defined at time " + time);
+        return values[seek(time)];
+    }
+
+    /**
+     * Return the instant of the last change, or negative infinity if no value is
+     * defined
+     */
+    public double lastChangeTime() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : times[size - 1];
+    }
+
+    /**
+     * Return the first instant after the given time at which the value changes,
+     * or infinity if it does not change anymore.
+     */
+    public double nextChangeTime(double time) {
+        if (size == 0)
+            return Double.POSITIVE_INFINITY;
+        if (time < times[0])
+            return times[0];
+        int i = seek(time) + 1;
+        return i < size ? times[i] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Find the last entry at or before the given time. The time must not be before
+     * the first entry.
+     */
+    private int seek(double time) {
+        int i = cursor;
+        while (i + 1 < size && times[i + 1] <= time)
+            i++;
+        while (times[i] > time)
+            i--;
+        cursor = i;
+        return i;
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of the next event of each {@link CircuitElement}, ordered by
+ * the event instant. Each element has at most one pending event. Implemented
+ * as an indexed binary heap, so rescheduling an element is O(log n) and
+ * finding the next event is O(1).
+ */
+public class EventQueue {
+    private CircuitElement[] heap = new CircuitElement[8];
+    private int size;
+
+    private CircuitElement[] runInNextStep = new CircuitElement[8];
+    private int runInNextStepCount;
+
+    /**
+     * End of the current step. Events can only be scheduled after this instant.
+     */
+    private double time;
+
+    /**
+     * Set the end of the step which is about to be run.
+     */
+    public void advanceTo(double time) {
+        this.time = time;
+    }
+
+    /**
+     * Schedule the next event of the element, replacing any previously
+     * scheduled event. Scheduling at infinity cancels the event. Scheduling at or
+     * before the end of the current step runs the element in the next step,
+     * without limiting its duration.
+     */
+    public void schedule(CircuitElement element, double instant) {
+        if (instant == Double.POSITIVE_INFINITY) {
+            cancel(element);
+            return;
+        }
+        if (instant <= time) {
+            cancel(element);
+            runInNextStep(element);
+            return;
+        }
+        double oldInstant = element.eventTime;
+        element.eventTime = instant;
+        if (element.eventQueueIndex < 0) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, size * 2);
+            element.eventQueueIndex = size;
+            heap[size++] = element;
+            siftUp(element.eventQueueIndex);
+        } else if (instant < oldInstant) {
+            siftUp(element.eventQueueIndex);
+        } else {
+            siftDown(element.eventQueueIndex);
+        }
+    }
+
+    /**
+     * Run the element in the next step, independent of the event scheduled for
+     * it.
+     */
+    public void runInNextStep(CircuitElement element) {
+        if (element.runInNextStep)
+            return;
+        element.runInNextStep = true;
+        if (runInNextStepCount == runInNextStep.length)
+            runInNextStep = Arrays.copyOf(runInNextStep, runInNextStepCount * 2);
+        runInNextStep[runInNextStepCount++] = element;
+    }
+
+    public void cancel(CircuitElement element) {
+        element.eventTime = Double.POSITIVE_INFINITY;
+        int i = element.eventQueueIndex;
+        if (i < 0)
+            return;
+        element.eventQueueIndex = -1;
+        size--;
+        if (i == size) {
+            heap[size] = null;
+            return;
+        }
+        var last = heap[size];
+        heap[size] = null;
+        heap[i] = last;
+        last.eventQueueIndex = i;
+        siftUp(i);
+        siftDown(last.eventQueueIndex);
+    }
+
+    /**
+     * Instant of the earliest pending event, or infinity if there is none
+     */
+    public double nextEventTime() {
+        return size == 0 ? Double.POSITIVE_INFINITY : heap[0].eventTime;
+    }
+
+    /**
+     * Remove all events up to and including the given instant and append the
+     * elements to the target array, starting at the given offset. Elements which
+     * requested to {@link #runInNextStep} are added as well, unless they are
+     * already part of the due events.
+     *
+     * @return the new number of elements in the target
+     */
+    public int pollDue(double instant, CircuitElement[] target, int offset) {
+        while (size > 0 && heap[0].eventTime <= instant) {
+            var element = heap[0];
+            cancel(element);
+            if (!element.runInNextStep)
+                target[offset++] = element;
+        }
+        for (int i = 0; i < runInNextStepCount; i++) {
+            var element = runInNextStep[i];
+            element.runInNextStep = false;
+            runInNextStep[i] = null;
+            target[offset++] = element;
+        }
+        runInNextStepCount = 0;
+        return offset;
+    }
+
+    public void clear() {
+        time = 0;
+        for (int i = 0; i < size; i++) {
+            heap[i].eventQueueIndex = -1;
+            heap[i].eventTime = Double.POSITIVE_INFINITY;
+            heap[i] = null;
+        }
+        size = 0;
+        for (int i = 0; i < runInNextStepCount; i++) {
+            runInNextStep[i].runInNextStep = false;
+            runInNextStep[i] = null;
+        }
+        runInNextStepCount = 0;
+    }
+
+    private void siftUp(int i) {
+        var element = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            var p = heap[parent];
+            if (p.eventTime <= element.eventTime)
+                break;
+            heap[i] = p;
+            p.eventQueueIndex = i;
+            i = parent;
+        }
+        heap[i] = element;
+        element.eventQueueIndex = i;
+    }
+
+    private void siftDown(int i) {
+        var element = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            var c = heap[child];
+            int right = child + 1;
+            if (right < size && heap[right].eventTime < c.eventTime) {
+                child = right;
+                c = heap[child];
+            }
+            if (element.eventTime <= c.eventTime)
+                break;
+            heap[i] = c;
+            c.eventQueueIndex = i;
+            i = child;
+        }
+        heap[i] = element;
+        element.eventQueueIndex = i;
+    }
+}
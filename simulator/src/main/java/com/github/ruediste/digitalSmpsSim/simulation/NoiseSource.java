@@ -0,0 +1,64 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * Gaussian noise which is a function of a seed, a stream (for example an ADC
+ * channel) and the index of the sample within the stream. In contrast to a
+ * sequential random generator, the noise does not depend on the order or the
+ * number of draws, so forked, parallel and cached simulations see the same
+ * noise. The source is stateless and does not need to be saved in a
+ * {@link CircuitSnapshot}.
+ *
+ * <p>
+ * By default each draw seeds a {@link SplittableRandom} with the mixed key. A
+ * tabulated source looks the key up in a shared table of pre-generated values
+ * instead, which is cheaper but repeats after {@value #tableSize} distinct
+ * values.
+ */
+public class NoiseSource {
+    private static final int tableBits = 16;
+    private static final int tableSize = 1 << tableBits;
+
+    private static class Table {
+        static final double[] values = new double[tableSize];
+        static {
+            var random = new SplittableRandom(0);
+            for (int i = 0; i < tableSize; i++)
+                values[i] = random.nextGaussian();
+        }
+    }
+
+    private final long seed;
+    private final boolean tabulated;
+
+    public NoiseSource(long seed) {
+        this(seed, false);
+    }
+
+    public NoiseSource(long seed, boolean tabulated) {
+        this.seed = seed;
+        this.tabulated = tabulated;
+    }
+
+    /**
+     * Standard normal value of a sample
+     */
+    public double gaussian(int stream, long index) {
+        long key = mix(mix(mix(seed) + stream) + index);
+        if (tabulated)
+            return Table.values[(int) (key >>> (64 - tableBits))];
+        return new SplittableRandom(key).nextGaussian();
+    }
+
+    /**
+     * Mixing function of {@link SplittableRandom}, applied after adding its seed
+     * increment
+     */
+    private static long mix(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
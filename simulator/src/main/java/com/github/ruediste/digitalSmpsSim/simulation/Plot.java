@@ -1,10 +1,11 @@
 package com.github.ruediste.digitalSmpsSim.simulation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Supplier;
+import java.util.function.DoubleSupplier;
 
 import com.github.ruediste.digitalSmpsSim.quantity.SiPrefix;
 import com.github.ruediste.digitalSmpsSim.quantity.Unit;
@@ -19,7 +20,32 @@ public class Plot {
 
     public List<Series> series = new ArrayList<>();
 
-    public List<PlotValues> values = new ArrayList<>();
+    /**
+     * Number of points covering the whole simulation in the coarsest level of
+     * the {@link #levels pyramid}
+     */
+    public int resolution = 200;
+
+    /**
+     * Number of levels of the pyramid. Each level has twice the resolution of the
+     * next coarser one.
+     */
+    public int levelCount = 4;
+
+    /**
+     * Level of detail pyramid of the plot points, the finest level first. The
+     * finest level is filled while the simulation runs, the points of each level
+     * are aggregated into the points of the next coarser level, which have twice
+     * the period.
+     */
+    public List<Level> levels = new ArrayList<>();
+
+    private double sumDuration;
+
+    /**
+     * End of the last step included in the aggregates
+     */
+    private double lastSampleTime;
 
     public List<PlotYAxis> axes = new ArrayList<>();
 
@@ -33,24 +59,188 @@ public class Plot {
     public static class Series {
         public String name;
         public Unit unit;
-        public Supplier<Double> valueSupplier;
+        public DoubleSupplier valueSupplier;
         public boolean stepAfter;
         public int yAxisIndex;
 
-        public double sum;
-        public double sumDuration;
         public boolean combinedAxis;
 
-        public Series(String name, Unit unit, Supplier<Double> valueSupplier) {
+        private double sum;
+        private double min;
+        private double max;
+        private double last;
+
+        public Series(String name, Unit unit, DoubleSupplier valueSupplier) {
             this.name = name;
             this.unit = unit;
             this.valueSupplier = valueSupplier;
         }
     }
 
-    public static class PlotValues {
-        public double time;
-        public List<Double> values = new ArrayList<>();
+    /**
+     * Points of one level of the pyramid. Each point aggregates the values of the
+     * series over the time since the previous point. Only the first {@link #size}
+     * entries of the arrays are used.
+     */
+    public static class Level {
+        /**
+         * Nominal time between two points
+         */
+        public final double period;
+
+        public int size;
+        public double[] times;
+        public double[] durations;
+
+        /**
+         * Time weighted average, minimum and maximum of each series, indexed by
+         * series and point
+         */
+        public double[][] mean;
+        public double[][] min;
+        public double[][] max;
+
+        /**
+         * Aggregate of the points of the finer level since the last point
+         */
+        private double nextPoint;
+        private int pendingCount;
+        private double pendingTime;
+        private double pendingDuration;
+        private double[] pendingSum;
+        private double[] pendingMin;
+        private double[] pendingMax;
+        private double[] pendingLast;
+
+        Level(double period, int seriesCount, int capacity) {
+            this.period = period;
+            nextPoint = period;
+            times = new double[capacity];
+            durations = new double[capacity];
+            mean = new double[seriesCount][capacity];
+            min = new double[seriesCount][capacity];
+            max = new double[seriesCount][capacity];
+            pendingSum = new double[seriesCount];
+            pendingMin = new double[seriesCount];
+            pendingMax = new double[seriesCount];
+            pendingLast = new double[seriesCount];
+            resetPending();
+        }
+
+        private int add(double time, double duration) {
+            if (size == times.length) {
+                int capacity = Math.max(16, size * 2);
+                times = Arrays.copyOf(times, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+                for (int i = 0; i < mean.length; i++) {
+                    mean[i] = Arrays.copyOf(mean[i], capacity);
+                    min[i] = Arrays.copyOf(min[i], capacity);
+                    max[i] = Arrays.copyOf(max[i], capacity);
+                }
+            }
+            times[size] = time;
+            durations[size] = duration;
+            return size++;
+        }
+
+        private void resetPending() {
+            pendingCount = 0;
+            pendingDuration = 0;
+            Arrays.fill(pendingSum, 0);
+            Arrays.fill(pendingMin, Double.POSITIVE_INFINITY);
+            Arrays.fill(pendingMax, Double.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * Include a point of the finer level. Once it ends after the end of the
+         * current point, the point is added.
+         *
+         * @return true if a point has been added
+         */
+        private boolean include(Level finer, int p) {
+            double duration = finer.durations[p];
+            pendingCount++;
+            pendingTime = finer.times[p];
+            pendingDuration += duration;
+            for (int i = 0; i < mean.length; i++) {
+                pendingSum[i] += finer.mean[i][p] * duration;
+                pendingMin[i] = Math.min(pendingMin[i], finer.min[i][p]);
+                pendingMax[i] = Math.max(pendingMax[i], finer.max[i][p]);
+                pendingLast[i] = finer.mean[i][p];
+            }
+            if (pendingTime <= nextPoint)
+                return false;
+            addPending();
+            nextPoint += period * Math.max(1, Math.ceil((pendingTime - nextPoint) / period));
+            return true;
+        }
+
+        private void addPending() {
+            int idx = add(pendingTime, pendingDuration);
+            for (int i = 0; i < mean.length; i++) {
+                mean[i][idx] = pendingDuration > 1e-12 ? pendingSum[i] / pendingDuration : pendingLast[i];
+                min[i][idx] = pendingMin[i];
+                max[i][idx] = pendingMax[i];
+            }
+            resetPending();
+        }
+
+        /**
+         * Index of the first point at or after the given time
+         */
+        public int indexOf(double time) {
+            int idx = Arrays.binarySearch(times, 0, size, time);
+            return idx >= 0 ? idx : -idx - 1;
+        }
+
+        private void trim() {
+            times = Arrays.copyOf(times, size);
+            durations = Arrays.copyOf(durations, size);
+            for (int i = 0; i < mean.length; i++) {
+                mean[i] = Arrays.copyOf(mean[i], size);
+                min[i] = Arrays.copyOf(min[i], size);
+                max[i] = Arrays.copyOf(max[i], size);
+            }
+        }
+
+        private void save(CircuitSnapshot.Writer out) {
+            out.writeInt(size);
+            out.writeObject(Arrays.copyOf(times, size));
+            out.writeObject(Arrays.copyOf(durations, size));
+            for (int i = 0; i < mean.length; i++) {
+                out.writeObject(Arrays.copyOf(mean[i], size));
+                out.writeObject(Arrays.copyOf(min[i], size));
+                out.writeObject(Arrays.copyOf(max[i], size));
+            }
+            out.writeInstant(nextPoint);
+            out.writeInt(pendingCount);
+            out.writeInstant(pendingTime);
+            out.writeDouble(pendingDuration);
+            out.writeObject(pendingSum.clone());
+            out.writeObject(pendingMin.clone());
+            out.writeObject(pendingMax.clone());
+            out.writeObject(pendingLast.clone());
+        }
+
+        private void restore(CircuitSnapshot.Reader in) {
+            size = in.readInt();
+            int capacity = Math.max(times.length, size);
+            times = Arrays.copyOf(in.<double[]>readObject(), capacity);
+            durations = Arrays.copyOf(in.<double[]>readObject(), capacity);
+            for (int i = 0; i < mean.length; i++) {
+                mean[i] = Arrays.copyOf(in.<double[]>readObject(), capacity);
+                min[i] = Arrays.copyOf(in.<double[]>readObject(), capacity);
+                max[i] = Arrays.copyOf(in.<double[]>readObject(), capacity);
+            }
+            nextPoint = in.readInstant();
+            pendingCount = in.readInt();
+            pendingTime = in.readInstant();
+            pendingDuration = in.readDouble();
+            pendingSum = in.<double[]>readObject().clone();
+            pendingMin = in.<double[]>readObject().clone();
+            pendingMax = in.<double[]>readObject().clone();
+            pendingLast = in.<double[]>readObject().clone();
+        }
     }
 
     public Plot(Circuit circuit, String title) {
@@ -62,7 +252,11 @@ public class Plot {
         return add(name, unit, value::get);
     }
 
-    public <T> Plot add(String name, Unit unit, Supplier<Double> valueSupplier) {
+    public Plot add(String name, Unit unit, DoubleSimulationValue value) {
+        return add(name, unit, value::get);
+    }
+
+    public Plot add(String name, Unit unit, DoubleSupplier valueSupplier) {
         this.series.add(new Series(name, unit, valueSupplier));
         if (unit == Unit.Digital)
             stepAfter();
@@ -93,7 +287,169 @@ public class Plot {
         return this;
     }
 
+    /**
+     * Set the {@link #resolution}
+     */
+    public Plot resolution(int points) {
+        this.resolution = points;
+        return this;
+    }
+
+    /**
+     * Set the {@link #levelCount number of levels} of the pyramid
+     */
+    public Plot levelCount(int count) {
+        this.levelCount = count;
+        return this;
+    }
+
+    /**
+     * Clear the pyramid and add a point with the initial values of the series
+     */
+    void begin(double finalTime) {
+        double period = finalTime / ((long) resolution << (levelCount - 1));
+        levels.clear();
+        for (int i = 0; i < levelCount; i++) {
+            // room for the initial point, the points and a few points caused by
+            // rounding
+            int capacity = (resolution << (levelCount - 1 - i)) + 4;
+            levels.add(new Level(period * (1L << i), series.size(), capacity));
+        }
+        resetAggregates();
+        if (isInRange(0)) {
+            sample(0);
+            for (var level : levels)
+                addPoint(level, 0, 0);
+            resetAggregates();
+        }
+    }
+
+    private boolean isInRange(double time) {
+        return (start == null || time >= start) && (end == null || time <= end);
+    }
+
+    /**
+     * Include the values of the series at the end of a step. Once the step ends
+     * after the end of the current point, a point is added to the finest level.
+     */
+    void stepCompleted(double time, double stepDuration) {
+        boolean inRange = isInRange(time);
+        if (inRange) {
+            sample(stepDuration);
+            lastSampleTime = time;
+        }
+        var finest = levels.get(0);
+        if (time > finest.nextPoint) {
+            if (inRange)
+                addPoint(time);
+            // steps can be longer than the period of the finest level
+            finest.nextPoint += finest.period * Math.max(1, Math.ceil((time - finest.nextPoint) / finest.period));
+        }
+    }
+
+    private void sample(double stepDuration) {
+        sumDuration += stepDuration;
+        for (int i = 0; i < series.size(); i++) {
+            var s = series.get(i);
+            double value = s.valueSupplier.getAsDouble();
+            if (Double.isInfinite(value))
+                value = 0;
+            s.sum += value * stepDuration;
+            s.min = Math.min(s.min, value);
+            s.max = Math.max(s.max, value);
+            s.last = value;
+        }
+    }
+
+    private void resetAggregates() {
+        sumDuration = 0;
+        for (var s : series) {
+            s.sum = 0;
+            s.min = Double.POSITIVE_INFINITY;
+            s.max = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private void addPoint(Level level, double time, double duration) {
+        int idx = level.add(time, duration);
+        for (int i = 0; i < series.size(); i++) {
+            var s = series.get(i);
+            level.mean[i][idx] = sumDuration > 1e-12 ? s.sum / sumDuration : s.last;
+            level.min[i][idx] = s.min;
+            level.max[i][idx] = s.max;
+        }
+    }
+
+    /**
+     * Add a point with the aggregated values since the last point to the finest
+     * level and propagate it to the coarser levels
+     */
+    private void addPoint(double time) {
+        addPoint(levels.get(0), time, sumDuration);
+        resetAggregates();
+        for (int i = 1; i < levels.size(); i++) {
+            var finer = levels.get(i - 1);
+            if (!levels.get(i).include(finer, finer.size - 1))
+                break;
+        }
+    }
+
+    /**
+     * Coarsest level which has at least {@link #resolution} points in the given
+     * range, or the finest level if none has
+     */
+    public Level level(double from, double to) {
+        double maxPeriod = (to - from) / resolution;
+        for (int i = levels.size() - 1; i > 0; i--) {
+            if (levels.get(i).period <= maxPeriod)
+                return levels.get(i);
+        }
+        return levels.get(0);
+    }
+
+    void saveState(CircuitSnapshot.Writer out) {
+        out.writeDouble(sumDuration);
+        out.writeInstant(lastSampleTime);
+        for (var s : series) {
+            out.writeDouble(s.sum);
+            out.writeDouble(s.min);
+            out.writeDouble(s.max);
+            out.writeDouble(s.last);
+        }
+        for (var level : levels)
+            level.save(out);
+    }
+
+    void restoreState(CircuitSnapshot.Reader in) {
+        sumDuration = in.readDouble();
+        lastSampleTime = in.readInstant();
+        for (var s : series) {
+            s.sum = in.readDouble();
+            s.min = in.readDouble();
+            s.max = in.readDouble();
+            s.last = in.readDouble();
+        }
+        for (var level : levels)
+            level.restore(in);
+    }
+
     public void finish() {
+        // add the pending points, such that each level covers the whole simulation.
+        // A point added to a level is included in the next coarser level, which
+        // possibly adds a point itself.
+        if (!levels.isEmpty() && sumDuration > 0)
+            addPoint(lastSampleTime);
+        boolean added = false;
+        for (int i = 1; i < levels.size(); i++) {
+            var level = levels.get(i);
+            var finer = levels.get(i - 1);
+            if (added && level.include(finer, finer.size - 1))
+                continue;
+            added = level.pendingCount > 0;
+            if (added)
+                level.addPending();
+        }
+        levels.forEach(l -> l.trim());
 
         int axisIndex = 0;
         Map<Unit, PlotYAxis> combinedAxes = new HashMap<>();
@@ -126,12 +482,13 @@ public class Plot {
 
         axes.stream().skip(axes.size() / 2).forEach(a -> a.isRight = true);
 
-        if (!values.isEmpty()) {
+        var finest = levels.isEmpty() ? null : levels.get(0);
+        if (finest != null && finest.size > 0) {
             if (start == null) {
-                start = values.get(0).time;
+                start = finest.times[0];
             }
             if (end == null) {
-                end = values.get(values.size() - 1).time;
+                end = finest.times[finest.size - 1];
             }
             timePrefix = SiPrefix.get(end);
         } else {
@@ -0,0 +1,52 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.List;
+
+/**
+ * State of the simulation of a single circuit, created by
+ * {@link Simulator#start}
+ */
+public class SimulationRun {
+    public final Circuit circuit;
+    public final List<Plot> plots;
+    public final double finalTime;
+
+    final CircuitElement[] continuous;
+    final CircuitElement[] due;
+
+    TraceWriter trace;
+    SimulationStatistics statistics;
+    CostBudget.Account budget;
+    boolean aborted;
+
+    double time;
+    long stepCount;
+
+    SimulationRun(Circuit circuit, double finalTime, List<Plot> plots) {
+        this.circuit = circuit;
+        this.finalTime = finalTime;
+        this.plots = plots;
+        continuous = circuit.elements.stream().filter(e -> e.isContinuous()).toArray(CircuitElement[]::new);
+        due = new CircuitElement[circuit.elements.size()];
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public boolean isFinished() {
+        return time >= finalTime;
+    }
+
+    /**
+     * True if the run has been aborted because its {@link CostBudget} was
+     * exceeded
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+}
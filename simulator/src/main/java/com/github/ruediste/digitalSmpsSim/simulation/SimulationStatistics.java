@@ -0,0 +1,204 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.ruediste.digitalSmpsSim.quantity.SiPrefix;
+
+/**
+ * Statistics about the steps of simulations, collected by the
+ * {@link Simulator} if {@link Simulator#collectStatistics} is set. The
+ * statistics of a single run are available in {@link Circuit#statistics}, the
+ * totals of all runs in {@link Simulator#statistics}.
+ */
+public class SimulationStatistics {
+    /**
+     * Exponent of the first bucket of the {@link #stepDurationHistogram}
+     */
+    public static final int minExponent = -15;
+
+    /**
+     * Steps shorter than this are considered tiny
+     */
+    public static final double tinyStepDuration = 1e-9;
+
+    /**
+     * Number of consecutive tiny steps which are reported as a warning
+     */
+    public static final int repeatedTinySteps = 3;
+
+    public static class ElementStatistics {
+        public final String name;
+
+        /**
+         * Number of invocations of {@link CircuitElement#run}
+         */
+        public long runs;
+
+        /**
+         * Wall time spent in {@link CircuitElement#run}
+         */
+        public long runNanos;
+
+        /**
+         * Wall time spent in {@link CircuitElement#valuesPropagated}, where
+         * continuous elements schedule their next event
+         */
+        public long scheduleNanos;
+
+        /**
+         * Number of steps ending at the event of this element
+         */
+        public long stepEnds;
+
+        public ElementStatistics(String name) {
+            this.name = name;
+        }
+
+        void add(ElementStatistics other) {
+            runs += other.runs;
+            runNanos += other.runNanos;
+            scheduleNanos += other.scheduleNanos;
+            stepEnds += other.stepEnds;
+        }
+    }
+
+    /**
+     * Number of simulated circuits
+     */
+    public long simulations;
+
+    public long steps;
+
+    /**
+     * Number of steps per decade of the step duration. Bucket i contains the
+     * steps with a duration between 10^(i+{@link #minExponent}) and
+     * 10^(i+1+{@link #minExponent}). The first and last buckets also contain the
+     * shorter and longer steps.
+     */
+    public long[] stepDurationHistogram = new long[16];
+
+    /**
+     * Wall time spent to determine the end of the steps
+     */
+    public long stepEndNanos;
+
+    /**
+     * Number of simulations where the first step was forced to end at 1e-10s,
+     * although an event was scheduled before
+     */
+    public long delayedFirstEvents;
+
+    /**
+     * Number of steps shorter than {@link #tinyStepDuration}
+     */
+    public long tinySteps;
+
+    /**
+     * Longest sequence of consecutive tiny steps
+     */
+    public long maxConsecutiveTinySteps;
+    private long consecutiveTinySteps;
+
+    /**
+     * Statistics of the elements, by name. Elements of circuits with the same
+     * structure share the name.
+     */
+    public final Map<String, ElementStatistics> elements = new LinkedHashMap<>();
+
+    /**
+     * Statistics of the elements of the simulated circuit, by
+     * {@link CircuitElement#index}
+     */
+    ElementStatistics[] byIndex;
+
+    public SimulationStatistics() {
+    }
+
+    /**
+     * Create the statistics of a run of the given circuit
+     */
+    SimulationStatistics(Circuit circuit) {
+        simulations = 1;
+        byIndex = new ElementStatistics[circuit.elements.size()];
+        for (var element : circuit.elements) {
+            var stats = new ElementStatistics(name(element));
+            byIndex[element.index] = stats;
+            elements.put(stats.name, stats);
+        }
+    }
+
+    private static String name(CircuitElement element) {
+        var name = element.getClass().getSimpleName();
+        if (name.isEmpty())
+            name = element.getClass().getName();
+        return name + "#" + element.index;
+    }
+
+    void stepCompleted(double stepDuration) {
+        steps++;
+        int bucket = stepDuration <= 0 ? 0 : (int) Math.floor(Math.log10(stepDuration)) - minExponent;
+        stepDurationHistogram[Math.max(0, Math.min(stepDurationHistogram.length - 1, bucket))]++;
+        if (stepDuration < tinyStepDuration) {
+            tinySteps++;
+            consecutiveTinySteps++;
+            maxConsecutiveTinySteps = Math.max(maxConsecutiveTinySteps, consecutiveTinySteps);
+        } else
+            consecutiveTinySteps = 0;
+    }
+
+    /**
+     * Add the statistics of a run to these totals
+     */
+    public synchronized void add(SimulationStatistics other) {
+        simulations += other.simulations;
+        steps += other.steps;
+        for (int i = 0; i < stepDurationHistogram.length; i++)
+            stepDurationHistogram[i] += other.stepDurationHistogram[i];
+        stepEndNanos += other.stepEndNanos;
+        delayedFirstEvents += other.delayedFirstEvents;
+        tinySteps += other.tinySteps;
+        maxConsecutiveTinySteps = Math.max(maxConsecutiveTinySteps, other.maxConsecutiveTinySteps);
+        for (var stats : other.elements.values())
+            elements.computeIfAbsent(stats.name, ElementStatistics::new).add(stats);
+    }
+
+    /**
+     * Descriptions of pathological step patterns
+     */
+    public synchronized List<String> warnings() {
+        var result = new ArrayList<String>();
+        if (delayedFirstEvents > 0)
+            result.add(delayedFirstEvents
+                    + " simulations had an event before the end of the forced first step at 1e-10s");
+        if (maxConsecutiveTinySteps >= repeatedTinySteps)
+            result.add(tinySteps + " steps shorter than " + SiPrefix.format(tinyStepDuration, "s") + ", up to "
+                    + maxConsecutiveTinySteps + " in a row");
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        var sb = new StringBuilder();
+        sb.append(String.format("%d simulations, %d steps, step end determination: %.3fms%n", simulations, steps,
+                stepEndNanos / 1e6));
+        sb.append("Step durations:\n");
+        for (int i = 0; i < stepDurationHistogram.length; i++) {
+            if (stepDurationHistogram[i] == 0)
+                continue;
+            var label = i == 0 ? "< 1e" + (minExponent + 1) + "s" : ">= 1e" + (i + minExponent) + "s";
+            sb.append(String.format("  %-12s %10d%n", label, stepDurationHistogram[i]));
+        }
+        sb.append(String.format("%-32s %10s %12s %14s %10s%n", "Element", "Runs", "Run [ms]", "Schedule [ms]",
+                "Step ends"));
+        for (var stats : elements.values()) {
+            sb.append(String.format("%-32s %10d %12.3f %14.3f %10d%n", stats.name, stats.runs, stats.runNanos / 1e6,
+                    stats.scheduleNanos / 1e6, stats.stepEnds));
+        }
+        for (var warning : warnings())
+            sb.append("WARNING: ").append(warning).append('\n');
+        return sb.toString();
+    }
+}
@@ -26,4 +26,14 @@ public class SimulationValue<T> {
     void transferNextValue() {
         this.value = nextValue;
     }
+
+    void saveState(CircuitSnapshot.Writer out) {
+        out.writeObject(value);
+        out.writeObject(nextValue);
+    }
+
+    void restoreState(CircuitSnapshot.Reader in) {
+        value = in.readObject();
+        nextValue = in.readObject();
+    }
 }
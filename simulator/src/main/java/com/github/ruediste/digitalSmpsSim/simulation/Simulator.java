@@ -1,90 +1,389 @@
 package com.github.ruediste.digitalSmpsSim.simulation;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 import com.github.ruediste.digitalSmpsSim.quantity.SiPrefix;
 
 public class Simulator {
 
+    /**
+     * If set, {@link SimulationStatistics} are collected for each run. This slows
+     * down the simulation.
+     */
+    public boolean collectStatistics;
+
+    /**
+     * Totals of the statistics of all runs
+     */
+    public final SimulationStatistics statistics = new SimulationStatistics();
+
     public void simulate(Circuit circuit, double finalTime, Plot... plots) {
         simulate(circuit, finalTime, List.of(plots));
     }
 
-    private void fillPlots(double time, double stepDuration, List<Plot> plots, boolean addPoint) {
-        for (var plot : plots) {
-            if (plot.start != null && time < plot.start)
-                continue;
-            if (plot.end != null && time > plot.end)
-                continue;
-            for (var series : plot.series) {
-                series.sumDuration += stepDuration;
-                series.sum += series.valueSupplier.get() * stepDuration;
-            }
-            if (addPoint) {
-                var values = new Plot.PlotValues();
-                values.time = time;
-                for (var series : plot.series) {
-                    values.values.add(series.sumDuration > 1e-9 ? series.sum / series.sumDuration : 0);
-                    series.sum = 0;
-                    series.sumDuration = 0;
-                }
-                plot.values.add(values);
-            }
-        }
+    public void simulate(Circuit circuit, double finalTime, List<Plot> plots) {
+        var run = start(circuit, finalTime, plots);
+        advance(run, finalTime);
+        finish(run);
     }
 
-    public void simulate(Circuit circuit, double finalTime, List<Plot> plots) {
+    /**
+     * Simulate the circuit and record the circuit state after every step in the
+     * trace. The trace is not closed.
+     */
+    public void simulate(Circuit circuit, double finalTime, List<Plot> plots, TraceWriter trace) {
+        var run = start(circuit, finalTime, plots);
+        run.trace = trace;
+        trace.start(circuit.state);
+        trace.append(0, circuit.state);
+        advance(run, finalTime);
+        finish(run);
+    }
+
+    /**
+     * Simulate the circuit without plots, ending early once the monitor detects a
+     * steady state
+     */
+    public void simulate(Circuit circuit, double finalTime, ConvergenceMonitor monitor) {
+        var run = start(circuit, finalTime, List.of());
+        advance(run, finalTime, monitor);
+        finish(run);
+    }
+
+    /**
+     * Simulate the circuit without plots, ending early once the monitor (if not
+     * null) detects a steady state, or aborting once the cost budget (if not null)
+     * is exceeded.
+     *
+     * @return false if the simulation has been aborted
+     */
+    public boolean simulate(Circuit circuit, double finalTime, ConvergenceMonitor monitor, CostBudget budget) {
+        var run = start(circuit, finalTime, List.of());
+        if (budget != null)
+            run.budget = budget.open(circuit);
+        if (monitor == null)
+            advance(run, finalTime);
+        else
+            advance(run, finalTime, monitor);
+        finish(run);
+        return !run.aborted;
+    }
+
+    /**
+     * Initialize the circuit and prepare the simulation up to the final time
+     */
+    public SimulationRun start(Circuit circuit, double finalTime, List<Plot> plots) {
+        circuit.events.clear();
         circuit.initialize();
         circuit.elements.forEach(e -> e.initialize());
         circuit.elements.forEach(e -> e.postInitialize());
         circuit.propagateValues();
-        double time = 0;
-        fillPlots(time, 1, plots, true);
-        double plotPeriod = finalTime / 200;
-        double nextPlot = plotPeriod;
-        long stepCount = 0;
-        while (time < finalTime) {
-            Double stepEnd = null;
-            double timeF = time;
+
+        var run = new SimulationRun(circuit, finalTime, plots);
+        if (collectStatistics)
+            run.statistics = circuit.statistics = new SimulationStatistics(circuit);
+        valuesPropagated(run, 0);
+
+        for (var plot : plots)
+            plot.begin(finalTime);
+        return run;
+    }
+
+    /**
+     * Run steps until the given time is reached. The last step can end after the
+     * time. Stops early if the run is aborted by its {@link CostBudget}.
+     */
+    public void advance(SimulationRun run, double until) {
+        while (run.time < until && !run.aborted) {
+            step(run, nextStepEnd(run));
+            if (run.budget != null && run.budget.stepCompleted())
+                run.aborted = true;
+        }
+    }
+
+    /**
+     * Like {@link #advance(SimulationRun, double)}, but once the monitor detects a
+     * steady state, the remaining whole periods are skipped by
+     * {@link CircuitSnapshot#extrapolate extrapolating} the state. The
+     * accumulators, like the total cost, grow by their rate within the windows
+     * compared by the monitor.
+     */
+    public void advance(SimulationRun run, double until, ConvergenceMonitor monitor) {
+        monitor.start(run);
+        while (run.time < until && !run.aborted) {
+            step(run, nextStepEnd(run));
+            if (run.budget != null && run.budget.stepCompleted())
+                run.aborted = true;
+            else if (monitor.stepCompleted(this, run)) {
+                var windowEnd = monitor.windowEnd();
+                double period = monitor.period();
+                long skipped = (long) Math.ceil((until - windowEnd.time) / period) - 1;
+                if (skipped > 0)
+                    restore(run, windowEnd.extrapolate(monitor.windowsStart(), windowEnd.time + skipped * period));
+            }
+        }
+    }
+
+    /**
+     * Run all steps which end before the given instant
+     */
+    public void advanceBefore(SimulationRun run, double instant) {
+        while (true) {
+            double stepEnd = nextStepEnd(run);
+            if (stepEnd >= instant)
+                break;
+            step(run, stepEnd);
+        }
+    }
+
+    public void finish(SimulationRun run) {
+        run.circuit.elements.forEach(e -> e.finish());
+        if (run.budget != null)
+            run.budget.report();
+        run.plots.forEach(p -> p.finish());
+        if (run.statistics != null)
+            statistics.add(run.statistics);
+    }
+
+    private double nextStepEnd(SimulationRun run) {
+        var circuit = run.circuit;
+        var stats = run.statistics;
+        long start = stats == null ? 0 : System.nanoTime();
+        double stepEnd = circuit.events.nextEventTime();
+        if (stepEnd == Double.POSITIVE_INFINITY) {
+            throw new RuntimeException("No Step End found at time " + SiPrefix.format(run.time,
+                    "s. Elements: " +
+                            circuit.elements.stream().map(e -> e.toString())
+                                    .collect(Collectors.joining(", "))));
+        }
+
+        if (run.stepCount == 0) {
+            if (stats != null && stepEnd < 1e-10)
+                stats.delayedFirstEvents++;
+            stepEnd = 1e-10;
+        }
+        if (stats != null)
+            stats.stepEndNanos += System.nanoTime() - start;
+        return stepEnd;
+    }
+
+    private void step(SimulationRun run, double stepEnd) {
+        var circuit = run.circuit;
+        double time = run.time;
+        var stats = run.statistics;
+        if (stats != null) {
             for (var element : circuit.elements) {
-                var tmp = element.stepEndTime(time);
-                if (tmp != null && tmp > time) {
-                    if (stepEnd == null)
-                        stepEnd = tmp;
-                    else
-                        stepEnd = Math.min(stepEnd, tmp);
-                }
+                if (element.scheduledEventTime() == stepEnd)
+                    stats.byIndex[element.index].stepEnds++;
             }
-            if (stepEnd == null) {
-                throw new RuntimeException("No Step End found at time " + SiPrefix.format(time,
-                        "s. End Times: " +
-                                circuit.elements.stream().map(e -> e + ":" + e.stepEndTime(timeF))
-                                        .collect(Collectors.joining(", "))));
+        }
+        circuit.events.advanceTo(stepEnd);
+        int dueCount = circuit.events.pollDue(stepEnd, run.due, 0);
+        double stepDuration = stepEnd - time;
+        runElements(run.continuous, run.due, dueCount, time, stepEnd, stepDuration, stats);
+
+        circuit.propagateValues();
+        circuit.runDeferredActions();
+        valuesPropagated(run, stepEnd);
+        run.time = stepEnd;
+        for (var plot : run.plots)
+            plot.stepCompleted(stepEnd, stepDuration);
+        if (run.trace != null)
+            run.trace.append(stepEnd, circuit.state);
+        if (stats != null)
+            stats.stepCompleted(stepDuration);
+        run.stepCount++;
+    }
+
+    /**
+     * Run the continuous elements and the elements with a due event, in the order
+     * of their registration.
+     */
+    private void runElements(CircuitElement[] continuous, CircuitElement[] due, int dueCount, double stepStart,
+            double stepEnd, double stepDuration, SimulationStatistics stats) {
+        // continuous elements are run anyways, and the due elements are sorted by
+        // index (insertion sort, there are only a few of them)
+        int count = 0;
+        for (int i = 0; i < dueCount; i++) {
+            var element = due[i];
+            if (element.isContinuous())
+                continue;
+            int j = count++;
+            while (j > 0 && due[j - 1].index > element.index) {
+                due[j] = due[j - 1];
+                j--;
+            }
+            due[j] = element;
+        }
+
+        int c = 0;
+        int d = 0;
+        while (c < continuous.length || d < count) {
+            CircuitElement element;
+            if (d >= count || (c < continuous.length && continuous[c].index < due[d].index))
+                element = continuous[c++];
+            else
+                element = due[d++];
+            if (stats == null)
+                element.run(stepStart, stepEnd, stepDuration);
+            else {
+                long start = System.nanoTime();
+                element.run(stepStart, stepEnd, stepDuration);
+                var elementStats = stats.byIndex[element.index];
+                elementStats.runNanos += System.nanoTime() - start;
+                elementStats.runs++;
             }
+        }
+    }
 
-            if (stepCount == 0)
-                stepEnd = 1e-10;
-
-            double stepDuration = stepEnd - time;
-            for (var element : circuit.elements)
-                element.run(time, stepEnd, stepDuration);
-
-            circuit.propagateValues();
-            circuit.withUpdatedValues.forEach(x -> x.run());
-            circuit.withUpdatedValues.clear();
-            time = stepEnd;
-            {
-                boolean addPoint = time > nextPlot;
-                fillPlots(stepEnd, stepDuration, plots, addPoint);
-                if (addPoint) {
-                    nextPlot += plotPeriod;
-                }
+    private void valuesPropagated(SimulationRun run, double instant) {
+        var stats = run.statistics;
+        for (var element : run.continuous) {
+            if (stats == null)
+                element.valuesPropagated(instant);
+            else {
+                long start = System.nanoTime();
+                element.valuesPropagated(instant);
+                stats.byIndex[element.index].scheduleNanos += System.nanoTime() - start;
             }
-            stepCount++;
         }
+    }
+
+    /**
+     * Capture the state of a simulation at the current step boundary
+     */
+    public CircuitSnapshot snapshot(SimulationRun run) {
+        var snapshot = new CircuitSnapshot(run.time, run.stepCount, run.circuit.state.snapshot());
+        var out = snapshot.writer();
+        run.circuit.values.forEach(v -> v.saveState(out));
+        run.circuit.elements.forEach(e -> e.saveState(out));
+        run.plots.forEach(p -> p.saveState(out));
+        return snapshot;
+    }
+
+    /**
+     * Continue a simulation from a snapshot. The run has to be {@link #start
+     * started}, and its circuit needs to have the same structure as the one of
+     * the snapshot.
+     */
+    public void restore(SimulationRun run, CircuitSnapshot snapshot) {
+        var circuit = run.circuit;
+        circuit.state.restore(snapshot.values);
+        circuit.events.clear();
+        circuit.events.advanceTo(snapshot.time);
+        run.time = snapshot.time;
+        run.stepCount = snapshot.stepCount;
+
+        var in = snapshot.reader();
+        circuit.values.forEach(v -> v.restoreState(in));
+        circuit.elements.forEach(e -> e.restoreState(in, snapshot.time));
+        run.plots.forEach(p -> p.restoreState(in));
+        valuesPropagated(run, snapshot.time);
+    }
+
+    /**
+     * Simulate multiple circuits. Circuits with the same
+     * {@link Circuit#forkKey} are simulated together: the common prefix is
+     * simulated once and then forked into a continuation for each circuit.
+     */
+    public <T extends Circuit> void simulateForked(List<T> circuits, ToDoubleFunction<T> finalTime,
+            boolean withPlots) {
+        for (var group : forkGroups(circuits)) {
+            simulateGroup(group, finalTime, withPlots);
+        }
+    }
+
+    /**
+     * Group the circuits by their {@link Circuit#forkKey}. Circuits without a key
+     * form a group on their own.
+     */
+    public <T extends Circuit> List<List<T>> forkGroups(List<T> circuits) {
+        var result = new ArrayList<List<T>>();
+        var groups = new LinkedHashMap<Object, List<T>>();
+        for (var circuit : circuits) {
+            if (circuit.forkKey == null) {
+                result.add(List.of(circuit));
+            } else
+                groups.computeIfAbsent(circuit.forkKey, k -> new ArrayList<>()).add(circuit);
+        }
+        result.addAll(groups.values());
+        return result;
+    }
+
+    /**
+     * Simulate a group of circuits with the same fork key
+     */
+    public <T extends Circuit> void simulateGroup(List<T> group, ToDoubleFunction<T> finalTime, boolean withPlots) {
+        var first = group.get(0);
+        var firstRun = start(first, finalTime.applyAsDouble(first), withPlots ? first.plots : List.of());
+        if (group.size() > 1) {
+            advanceBefore(firstRun, forkTime(group));
+            var snapshot = snapshot(firstRun);
+            for (var circuit : group.subList(1, group.size())) {
+                simulateFrom(circuit, finalTime.applyAsDouble(circuit), withPlots ? circuit.plots : List.of(),
+                        snapshot);
+            }
+        }
+        advance(firstRun, firstRun.finalTime);
+        finish(firstRun);
+    }
+
+    /**
+     * Earliest instant at which one of the circuits of a group starts to differ
+     */
+    public double forkTime(List<? extends Circuit> group) {
+        return group.stream().mapToDouble(c -> c.forkTime).min().getAsDouble();
+    }
+
+    /**
+     * Simulate the given circuit up to, but excluding the step ending at the fork
+     * time, and capture the state. The circuit cannot be continued afterwards, use
+     * {@link #simulateFrom} instead.
+     */
+    public CircuitSnapshot simulatePrefix(Circuit circuit, double finalTime, double forkTime) {
+        var run = start(circuit, finalTime, List.of());
+        advanceBefore(run, forkTime);
+        return snapshot(run);
+    }
+
+    /**
+     * Simulate a circuit to the final time, starting from a snapshot
+     */
+    public void simulateFrom(Circuit circuit, double finalTime, List<Plot> plots, CircuitSnapshot snapshot) {
+        simulateFrom(circuit, finalTime, plots, snapshot, null);
+    }
+
+    /**
+     * Simulate a circuit to the final time, starting from a snapshot. If a monitor
+     * is given, the simulation ends early once the circuit is in steady state.
+     */
+    public void simulateFrom(Circuit circuit, double finalTime, List<Plot> plots, CircuitSnapshot snapshot,
+            ConvergenceMonitor monitor) {
+        simulateFrom(circuit, finalTime, plots, snapshot, monitor, null);
+    }
 
-        circuit.elements.forEach(e -> e.finish());
-        plots.forEach(p -> p.finish());
+    /**
+     * Like {@link #simulateFrom(Circuit, double, List, CircuitSnapshot,
+     * ConvergenceMonitor)}, but abort once the cost budget (if not null) is
+     * exceeded. The cost of the prefix counts towards the budget.
+     *
+     * @return false if the simulation has been aborted
+     */
+    public boolean simulateFrom(Circuit circuit, double finalTime, List<Plot> plots, CircuitSnapshot snapshot,
+            ConvergenceMonitor monitor, CostBudget budget) {
+        var run = start(circuit, finalTime, plots);
+        restore(run, snapshot);
+        if (budget != null)
+            run.budget = budget.open(circuit);
+        if (monitor == null)
+            advance(run, finalTime);
+        else
+            advance(run, finalTime, monitor);
+        finish(run);
+        return !run.aborted;
     }
 }
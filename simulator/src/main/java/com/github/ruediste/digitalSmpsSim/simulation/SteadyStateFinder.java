@@ -0,0 +1,121 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Finds the periodic steady state of a circuit by shooting: the circuit is
+ * simulated one period at a time, until the state at the period starts
+ * repeats. The remaining periods up to the fork time are then skipped by
+ * {@link CircuitSnapshot#extrapolate extrapolating} the snapshot.
+ *
+ * <p>
+ * The period is given by the instant of the next period start, typically the
+ * next reload of the control timer. Since the controllers see noisy ADC
+ * readings, the state never repeats exactly. Instead, the values of the
+ * {@link CircuitState} and the tracked values, typically the state of the
+ * controller, are sampled at each period start and averaged over a
+ * window of periods. The state is considered to repeat once the averages of two
+ * consecutive windows differ by less than the tolerance plus the noise of the
+ * averages.
+ */
+public class SteadyStateFinder {
+    private final Simulator sim;
+
+    /**
+     * Number of periods averaged in a window
+     */
+    public int window = 10;
+
+    /**
+     * Relative tolerance of the difference of the averages of two windows
+     */
+    public double tolerance = 1e-3;
+
+    /**
+     * Allowed difference of the averages, in standard errors
+     */
+    public double standardErrors = 2;
+
+    public SteadyStateFinder(Simulator sim) {
+        this.sim = sim;
+    }
+
+    /**
+     * Replacement for {@link Simulator#simulatePrefix}. Simulate the circuit until
+     * the state repeats and return the snapshot at the last period start before the
+     * fork time. If no steady state is found, the circuit is simulated up to the
+     * fork time.
+     */
+    public CircuitSnapshot simulatePrefix(Circuit circuit, double finalTime, double forkTime,
+            DoubleSupplier nextPeriodStart) {
+        return simulatePrefix(circuit, finalTime, forkTime, nextPeriodStart, List.of());
+    }
+
+    /**
+     * Like {@link #simulatePrefix(Circuit, double, double, DoubleSupplier)}, but
+     * the tracked values have to repeat as well. Used for state which is not part
+     * of the {@link CircuitState}, like the integrator of a controller.
+     */
+    public CircuitSnapshot simulatePrefix(Circuit circuit, double finalTime, double forkTime,
+            DoubleSupplier nextPeriodStart, List<DoubleSupplier> tracked) {
+        var run = sim.start(circuit, finalTime, List.of());
+        int stateSize = circuit.state.size();
+        int size = stateSize + tracked.size();
+        var sum = new double[size];
+        var sumSq = new double[size];
+        double[] lastMean = null;
+        double[] lastVariance = null;
+        CircuitSnapshot lastWindowEnd = null;
+        int periods = 0;
+        while (true) {
+            double periodStart = nextPeriodStart.getAsDouble();
+            if (periodStart >= forkTime)
+                break;
+            sim.advance(run, periodStart);
+            var current = circuit.state.current;
+            for (int i = 0; i < size; i++) {
+                double value = i < stateSize ? current[i] : tracked.get(i - stateSize).getAsDouble();
+                sum[i] += value;
+                sumSq[i] += value * value;
+            }
+            if (++periods < window)
+                continue;
+
+            // end of a window
+            var snapshot = sim.snapshot(run);
+            var mean = new double[size];
+            var variance = new double[size];
+            for (int i = 0; i < size; i++) {
+                mean[i] = sum[i] / window;
+                variance[i] = Math.max(0, sumSq[i] / window - mean[i] * mean[i]);
+            }
+            if (lastMean != null && repeats(lastMean, lastVariance, mean, variance)) {
+                double period = (snapshot.time - lastWindowEnd.time) / window;
+                long skipped = (long) Math.ceil((forkTime - snapshot.time) / period) - 1;
+                if (skipped <= 0)
+                    break;
+                return snapshot.extrapolate(lastWindowEnd, snapshot.time + skipped * period);
+            }
+            lastMean = mean;
+            lastVariance = variance;
+            lastWindowEnd = snapshot;
+            periods = 0;
+            Arrays.fill(sum, 0);
+            Arrays.fill(sumSq, 0);
+        }
+        sim.advanceBefore(run, forkTime);
+        return sim.snapshot(run);
+    }
+
+    private boolean repeats(double[] lastMean, double[] lastVariance, double[] mean, double[] variance) {
+        for (int i = 0; i < mean.length; i++) {
+            double allowed = tolerance * Math.max(Math.abs(mean[i]), Math.abs(lastMean[i]))
+                    + standardErrors * Math.sqrt((variance[i] + lastVariance[i]) / window);
+            if (Math.abs(mean[i] - lastMean[i]) > allowed)
+                return false;
+        }
+        return true;
+    }
+}
@@ -13,4 +13,13 @@ public class StepChangingValue<T> {
     public T get(double time) {
         return values.floorEntry(time).getValue();
     }
+
+    /**
+     * Return the first instant after the given time at which the value changes,
+     * or infinity if it does not change anymore.
+     */
+    public double nextChangeTime(double time) {
+        var next = values.higherKey(time);
+        return next == null ? Double.POSITIVE_INFINITY : next;
+    }
 }
@@ -0,0 +1,65 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tasks of a parameter sweep on a work stealing pool and passes each
+ * result to a consumer as soon as it is available, in the order of completion.
+ *
+ * <p>
+ * Tasks are only submitted while less than {@link #maxInFlight} of them are
+ * running or queued. Since the tasks typically create their circuits, this
+ * bounds the memory used by simulations which are not completed yet.
+ */
+public class SweepExecutor {
+
+    /**
+     * Number of threads of the pool
+     */
+    public int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of tasks submitted to the pool and not completed yet
+     */
+    public int maxInFlight = 2 * parallelism;
+
+    /**
+     * Run all tasks and wait for their completion. The consumer is invoked from
+     * the threads of the pool, possibly concurrently. If a task fails, the
+     * remaining tasks are still run and the first failure is thrown afterwards.
+     */
+    public <T> void run(List<? extends Supplier<? extends T>> tasks, Consumer<? super T> completed) {
+        int permits = Math.max(1, maxInFlight);
+        var inFlight = new Semaphore(permits);
+        var failure = new AtomicReference<Throwable>();
+        var pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            for (var task : tasks) {
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        completed.accept(task.get());
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new RuntimeException("Sweep interrupted", e);
+        } finally {
+            pool.shutdown();
+        }
+        if (failure.get() != null)
+            throw new RuntimeException("Sweep task failed", failure.get());
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a trace written by a {@link TraceWriter}. The records are accessed
+ * directly in the memory mapped file.
+ */
+public class TraceReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final List<String> names = new ArrayList<>();
+    private final long size;
+    private final int recordSize;
+    private final long recordsPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    public TraceReader(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+
+            var fixed = read(0, 20);
+            if (fixed.getInt() != TraceWriter.MAGIC)
+                throw new IllegalArgumentException(file + " is not a trace file");
+            int version = fixed.getInt();
+            if (version != TraceWriter.VERSION)
+                throw new IllegalArgumentException("Unsupported trace version " + version + " of " + file);
+            size = fixed.getLong();
+            int seriesCount = fixed.getInt();
+            long position = 20;
+            for (int i = 0; i < seriesCount; i++) {
+                int length = read(position, 4).getInt();
+                var name = new byte[length];
+                read(position + 4, length).get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                position += 4 + length;
+            }
+            long dataStart = (position + 7) & ~7;
+
+            recordSize = 8 * (seriesCount + 1);
+            recordsPerChunk = Integer.MAX_VALUE / recordSize;
+            chunks = new MappedByteBuffer[(int) ((size + recordsPerChunk - 1) / recordsPerChunk)];
+            for (int i = 0; i < chunks.length; i++) {
+                long records = Math.min(recordsPerChunk, size - i * recordsPerChunk);
+                chunks[i] = channel.map(MapMode.READ_ONLY, dataStart + i * recordsPerChunk * recordSize,
+                        records * recordSize);
+                chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of trace file");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Names of the traced values, in the order of their index
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * Number of records
+     */
+    public long size() {
+        return size;
+    }
+
+    public double time(long record) {
+        return chunks[(int) (record / recordsPerChunk)].getDouble((int) (record % recordsPerChunk) * recordSize);
+    }
+
+    public double value(long record, int series) {
+        return chunks[(int) (record / recordsPerChunk)]
+                .getDouble((int) (record % recordsPerChunk) * recordSize + 8 * (series + 1));
+    }
+
+    /**
+     * Index of the first record at or after the given time, or {@link #size()} if
+     * there is none
+     */
+    public long indexOf(double time) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (time(mid) < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
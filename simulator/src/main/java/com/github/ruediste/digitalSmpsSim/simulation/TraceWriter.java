@@ -0,0 +1,139 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the {@link CircuitState} after every step of a simulation into a
+ * memory mapped file, see {@link Simulator#simulate(Circuit, double, java.util.List, TraceWriter)}.
+ * The file is mapped in chunks, so the trace stays off heap regardless of the
+ * number of steps. Read the file with a {@link TraceReader}.
+ *
+ * <p>
+ * File format (little endian):
+ *
+ * <pre>
+ * int     magic
+ * int     version
+ * long    record count, written when closing
+ * int     series count
+ * per series: int length, UTF-8 bytes of the name
+ * padding to a multiple of 8 bytes
+ * per step: double time, double value of each series
+ * </pre>
+ */
+public class TraceWriter implements AutoCloseable {
+    static final int MAGIC = 0x534d5054;
+    static final int VERSION = 1;
+    static final int RECORD_COUNT_OFFSET = 8;
+
+    /**
+     * Size of the mapped chunks
+     */
+    static final long CHUNK_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long dataStart;
+    private int seriesCount = -1;
+    private long recordCount;
+
+    public TraceWriter(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the header describing the values of the circuit state. Invoked by
+     * the {@link Simulator} when the simulation starts.
+     */
+    void start(CircuitState state) {
+        if (seriesCount >= 0)
+            throw new IllegalStateException("Trace has already been started");
+        seriesCount = state.size();
+        var names = new byte[seriesCount][];
+        int headerSize = 20;
+        for (int i = 0; i < seriesCount; i++) {
+            names[i] = state.name(i).getBytes(StandardCharsets.UTF_8);
+            headerSize += 4 + names[i].length;
+        }
+        dataStart = (headerSize + 7) & ~7;
+
+        var header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(0);
+        header.putInt(seriesCount);
+        for (var name : names) {
+            header.putInt(name.length);
+            header.put(name);
+        }
+        header.clear();
+        try {
+            channel.write(header, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        map(dataStart);
+    }
+
+    private void map(long position) {
+        try {
+            chunk = channel.map(MapMode.READ_WRITE, position, CHUNK_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        chunkStart = position;
+    }
+
+    /**
+     * Append the values of the circuit state at the end of a step
+     */
+    void append(double time, CircuitState state) {
+        int recordSize = 8 * (seriesCount + 1);
+        if (chunk.remaining() < recordSize)
+            map(chunkStart + chunk.position());
+        chunk.putDouble(time);
+        for (int i = 0; i < seriesCount; i++)
+            chunk.putDouble(state.get(i));
+        recordCount++;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Write the record count and cut the file after the last record
+     */
+    @Override
+    public void close() {
+        try {
+            if (seriesCount >= 0) {
+                var count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(recordCount);
+                count.flip();
+                channel.write(count, RECORD_COUNT_OFFSET);
+                chunk.force();
+                chunk = null;
+                channel.truncate(dataStart + recordCount * 8 * (seriesCount + 1));
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
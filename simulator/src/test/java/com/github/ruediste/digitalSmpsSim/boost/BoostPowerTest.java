@@ -0,0 +1,66 @@
+package com.github.ruediste.digitalSmpsSim.boost;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class BoostPowerTest {
+
+    private BoostCircuit createCircuit(boolean switchOn, double iL) {
+        var circuit = new BoostCircuit();
+        circuit.load.resistance.set(0, 1200);
+        circuit.inputVoltage.initialize(5);
+        circuit.outputVoltage.initialize(12);
+        circuit.switchOn.initialize(switchOn);
+        circuit.power.initialize();
+        circuit.power.iL = iL;
+        return circuit;
+    }
+
+    private BoostCircuit simulate(boolean switchOn, double iL, double duration, int steps) {
+        var circuit = createCircuit(switchOn, iL);
+        double stepDuration = duration / steps;
+        for (int i = 0; i < steps; i++) {
+            circuit.power.run(i * stepDuration, (i + 1) * stepDuration, stepDuration);
+            circuit.propagateValues();
+        }
+        return circuit;
+    }
+
+    private void assertStepSizeIndependent(boolean switchOn, double iL, double duration) {
+        var single = simulate(switchOn, iL, duration, 1);
+        var many = simulate(switchOn, iL, duration, 1000);
+        assertEquals(many.power.iL, single.power.iL, 1e-9);
+        assertEquals(many.power.capacitorVoltage, single.power.capacitorVoltage, 1e-9);
+        assertEquals(many.outputVoltage.get(), single.outputVoltage.get(), 1e-9);
+    }
+
+    @Test
+    public void stepSizeIndependent() {
+        // charging the inductor
+        assertStepSizeIndependent(true, 0.01, 100e-6);
+
+        // discharging into the output, CCM
+        assertStepSizeIndependent(false, 0.05, 20e-6);
+
+        // discharging into the output, reaching DCM within the step
+        assertStepSizeIndependent(false, 0.01, 1e-3);
+
+        // DCM
+        assertStepSizeIndependent(false, 0, 1e-3);
+    }
+
+    @Test
+    public void zeroCrossing() {
+        var circuit = createCircuit(false, 0.01);
+        circuit.power.valuesPropagated(0);
+        double crossing = circuit.power.scheduledEventTime();
+
+        // V=L*di/dt; dt=L*di/V
+        double estimate = circuit.power.inductance * 0.01 / (12 + 0.2 - 5);
+        assertEquals(estimate, crossing, estimate * 0.05);
+
+        circuit.power.run(0, crossing, crossing);
+        assertEquals(0, circuit.power.iL);
+    }
+}
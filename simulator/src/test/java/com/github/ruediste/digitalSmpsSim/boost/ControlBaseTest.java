@@ -0,0 +1,205 @@
+package com.github.ruediste.digitalSmpsSim.boost;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.ruediste.digitalSmpsSim.optimization.Optimizer;
+import com.github.ruediste.digitalSmpsSim.simulation.NoiseSource;
+
+public class ControlBaseTest {
+
+    /**
+     * Control without any regulation, only used to access the ADC
+     */
+    private static class AdcControl extends ControlBase<BoostCircuit> {
+
+        AdcControl(BoostCircuit circuit) {
+            super(circuit);
+        }
+
+        @Override
+        public double setPoint() {
+            return 0;
+        }
+
+        @Override
+        public double targetValue(double instant) {
+            return 0;
+        }
+
+        @Override
+        public double actualValue() {
+            return 0;
+        }
+
+        @Override
+        public String parameterInfo() {
+            return "";
+        }
+
+        @Override
+        public double simulationDuration() {
+            return 1;
+        }
+
+        @Override
+        public double eventTime() {
+            return 0;
+        }
+
+        @Override
+        public void initializeSteadyState() {
+        }
+
+        @Override
+        public List<? extends Optimizer.OptimizationParameter<?>> optimizationParameters() {
+            return List.of();
+        }
+    }
+
+    private final BoostCircuit circuit = new BoostCircuit();
+    private final AdcControl control = new AdcControl(circuit);
+
+    /**
+     * Values of the conversions so far, by conversion number
+     */
+    private final List<Double> conversions = new ArrayList<>();
+
+    /**
+     * Values the channels were filled with before the first conversion
+     */
+    private final double[] fill = new double[ControlBase.adcChannelCount];
+
+    private void fill(int channel, double value) {
+        control.fillAdcChannel(channel, value);
+        fill[channel] = value;
+    }
+
+    /**
+     * Convert the next channel, triggered by the compare channel of the PWM timer
+     * like during the simulation
+     */
+    private void convert() {
+        int n = conversions.size();
+        circuit.outputVoltage.initialize(100 + n);
+        circuit.inputVoltage.initialize(200 + n);
+        control.adcChannel.onCompare.run(0);
+        circuit.runDeferredActions();
+        conversions.add(n % 2 == 0 ? 100. + n : 200. + n);
+    }
+
+    /**
+     * Value of a conversion, negative conversions being the initial fill
+     */
+    private double conversion(long n) {
+        if (n < 0)
+            return fill[(int) Math.floorMod(n, ControlBase.adcChannelCount)];
+        return conversions.get((int) n);
+    }
+
+    /**
+     * Average of the samples of the channel within the last conversions of all
+     * channels, the noise being drawn by the sample index within the channel
+     */
+    private double expected(int channel, int samples, DoubleUnaryOperator toAdc, double noiseSigma) {
+        long iteration = conversions.size();
+        double sum = 0;
+        for (long n = iteration - samples * ControlBase.adcChannelCount; n < iteration; n++) {
+            if (Math.floorMod(n, ControlBase.adcChannelCount) != channel)
+                continue;
+            sum += toAdc.applyAsDouble(conversion(n))
+                    + noiseSigma * control.noise.gaussian(channel, Math.floorDiv(n, ControlBase.adcChannelCount));
+        }
+        return sum / samples;
+    }
+
+    private void assertReads(int depth, DoubleUnaryOperator toAdc, double noiseSigma) {
+        for (int channel = 0; channel < ControlBase.adcChannelCount; channel++)
+            for (int samples = 1; samples <= depth; samples++)
+                assertEquals(expected(channel, samples, toAdc, noiseSigma),
+                        control.readAdcChannel(channel, samples, toAdc, noiseSigma), 1e-9,
+                        "channel " + channel + ", samples " + samples + ", conversions " + conversions.size());
+    }
+
+    @Test
+    public void interleavedWraparound() {
+        fill(0, 10);
+        fill(1, 20);
+        assertEquals(10, control.readAdcChannel(0, 4));
+        assertEquals(20, control.readAdcChannel(1, 4));
+
+        // wraps around the buffer of 8 entries multiple times, reading at odd and
+        // even write positions
+        for (int i = 0; i < 21; i++) {
+            convert();
+            assertReads(4, x -> x, 0);
+        }
+        assertEquals(120, control.measuredVoltage);
+        assertEquals((217 + 219) / 2., control.readAdcChannel(1, 2));
+        assertEquals((118 + 120) / 2. * 3, control.readAdcChannel(0, 2, x -> x * 3));
+    }
+
+    @Test
+    public void samplesUpToDepth() {
+        assertEquals(0, control.readAdcChannel(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> control.readAdcChannel(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> control.readAdcChannel(1, 0));
+    }
+
+    @Test
+    public void setAdcBufferDepth() {
+        for (int i = 0; i < 5; i++)
+            convert();
+        control.adcAveraging = 4;
+        control.setAdcBufferDepth(3);
+        assertEquals(3, control.adcAveraging);
+        control.setAdcBufferDepth(6);
+        assertEquals(3, control.adcAveraging);
+
+        // the buffer is cleared, but the conversion count continues
+        conversions.replaceAll(x -> 0.);
+        assertReads(6, x -> x, 0);
+        assertThrows(IllegalArgumentException.class, () -> control.readAdcChannel(0, 7));
+        for (int i = 0; i < 30; i++) {
+            convert();
+            assertReads(6, x -> x, 0);
+        }
+
+        // a single sample per channel
+        control.setAdcBufferDepth(1);
+        conversions.replaceAll(x -> 0.);
+        assertThrows(IllegalArgumentException.class, () -> control.readAdcChannel(0, 2));
+        for (int i = 0; i < 5; i++) {
+            convert();
+            assertReads(1, x -> x, 0);
+        }
+    }
+
+    @Test
+    public void noiseBySampleIndex() {
+        control.noise = new NoiseSource(3);
+        fill(0, 10);
+        fill(1, 20);
+
+        // the initial fill uses negative sample indexes
+        assertEquals(10 + 0.5 * control.noise.gaussian(0, -1), control.readAdcChannel(0, 1, x -> x, 0.5), 1e-12);
+        assertEquals(0.5 * (control.noise.gaussian(1, -1) + control.noise.gaussian(1, -2)) / 2,
+                control.readAdcChannel(1, 2, x -> 0, 0.5), 1e-12);
+        assertReads(4, x -> x, 0.5);
+
+        // the same sample gets the same noise in each read, the noise is not
+        // converted
+        for (int i = 0; i < 21; i++) {
+            convert();
+            assertReads(4, x -> x * 2, 0.5);
+        }
+        assertEquals(2 * 120 + 0.5 * control.noise.gaussian(0, 10), control.readAdcChannel(0, 1, x -> x * 2, 0.5),
+                1e-12);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CmaEsTest {
+
+    private double rosenbrock(double[] x) {
+        return 100 * Math.pow(x[1] - x[0] * x[0], 2) + Math.pow(1 - x[0], 2);
+    }
+
+    @Test
+    public void minimizeRosenbrock() {
+        var cma = new CmaEs(new double[] { -1, 2 }, new double[] { 0.5, 0.5 }, new double[] { -5, -5 },
+                new double[] { 5, 5 }, 12, 0);
+        while (cma.getEvaluations() < 10000) {
+            var points = cma.ask();
+            var values = new double[points.length];
+            for (int i = 0; i < points.length; i++)
+                values[i] = rosenbrock(points[i]);
+            cma.tell(points, values);
+            if (cma.getBestValue() < 1e-10)
+                break;
+        }
+        assertTrue(cma.getBestValue() < 1e-10);
+        assertArrayEquals(new double[] { 1, 1 }, cma.getBestPoint(), 1e-4);
+    }
+
+    @Test
+    public void respectBounds() {
+        var cma = new CmaEs(new double[] { 1 }, new double[] { 1 }, new double[] { 0.5 }, new double[] { 2 }, 10, 0);
+        for (int generation = 0; generation < 50; generation++) {
+            var points = cma.ask();
+            var values = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                assertTrue(points[i][0] >= 0.5 && points[i][0] <= 2);
+                values[i] = points[i][0];
+            }
+            cma.tell(points, values);
+        }
+        assertArrayEquals(new double[] { 0.5 }, cma.getBestPoint());
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.ruediste.digitalSmpsSim.simulation.Circuit;
+import com.github.ruediste.digitalSmpsSim.simulation.DoubleSimulationValue;
+
+public class EvaluationCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void persistAndEvict() {
+        var file = dir.resolve("cache.txt");
+        try (var cache = new EvaluationCache(file, 2)) {
+            cache.put("a", 1);
+            cache.put("b", 2);
+            cache.get("a");
+            cache.put("c", 3);
+            assertNull(cache.get("b"));
+        }
+        try (var cache = new EvaluationCache(file, 2)) {
+            assertEquals(2, cache.size());
+            assertEquals(1, cache.get("a"));
+            assertEquals(3, cache.get("c"));
+        }
+    }
+
+    @Test
+    public void fingerprint() {
+        var a = new Circuit();
+        new DoubleSimulationValue(a, "v", 1);
+        var b = new Circuit();
+        var value = new DoubleSimulationValue(b, "v", 1);
+        assertEquals(EvaluationCache.fingerprint(a), EvaluationCache.fingerprint(b));
+        value.set(2);
+        b.propagateValues();
+        assertNotEquals(EvaluationCache.fingerprint(a), EvaluationCache.fingerprint(b));
+    }
+
+    @Test
+    public void packageFingerprint() {
+        assertEquals(EvaluationCache.packageFingerprint(List.of(Circuit.class)),
+                EvaluationCache.packageFingerprint(List.of(DoubleSimulationValue.class)));
+        assertNotEquals(EvaluationCache.packageFingerprint(List.of(Circuit.class)),
+                EvaluationCache.packageFingerprint(List.of(EvaluationCache.class)));
+        // classes from a jar
+        assertEquals(EvaluationCache.packageFingerprint(List.of(Test.class)),
+                EvaluationCache.packageFingerprint(List.of(Assertions.class)));
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The executors run a single thread and measure the used time on a clock which
+ * is only advanced by the tasks, so the order of the tasks is deterministic.
+ */
+public class FairExecutorTest {
+    private final AtomicLong time = new AtomicLong();
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    private FairExecutor executor() {
+        var executor = new FairExecutor(1);
+        executor.clock = time::get;
+        return executor;
+    }
+
+    /**
+     * Submit tasks which record the name and use the given time
+     */
+    private void submit(Executor lane, String name, int count, long nanos) {
+        for (int i = 0; i < count; i++)
+            futures.add(CompletableFuture.runAsync(() -> {
+                order.add(name);
+                time.addAndGet(nanos);
+            }, lane));
+    }
+
+    /**
+     * Hold the thread of the executor until the tasks are queued, without using
+     * any time
+     */
+    private CountDownLatch hold(Executor lane) {
+        var queued = new CountDownLatch(1);
+        lane.execute(() -> {
+            try {
+                queued.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return queued;
+    }
+
+    private void awaitTasks() {
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static List<String> sequence(String... parts) {
+        var result = new ArrayList<String>();
+        for (var part : parts)
+            for (char c : part.toCharArray())
+                result.add(String.valueOf(c));
+        return result;
+    }
+
+    @Test
+    public void shortLaneIsNotStarved() {
+        try (var executor = executor(); var busy = executor.newLane(); var light = executor.newLane()) {
+            var queued = hold(busy);
+            submit(busy, "b", 20, 10);
+            submit(light, "l", 3, 10);
+            queued.countDown();
+            awaitTasks();
+        }
+        // ties go to the lane created first
+        assertEquals(sequence("blblbl", "bbbbbbbbbbbbbbbbb"), order);
+    }
+
+    @Test
+    public void leastUsedTimeIsSelected() {
+        try (var executor = executor(); var busy = executor.newLane(); var slow = executor.newLane()) {
+            var queued = hold(busy);
+            submit(busy, "b", 12, 10);
+            submit(slow, "s", 3, 30);
+            queued.countDown();
+            awaitTasks();
+        }
+        // a slow task uses as much time as three busy tasks
+        assertEquals(sequence("bs", "bbbs", "bbbs", "bbbbb"), order);
+    }
+
+    @Test
+    public void newLaneGetsNoCredit() {
+        try (var executor = executor(); var first = executor.newLane()) {
+            submit(first, "f", 5, 10);
+            awaitTasks();
+            // the time of the last task is accounted once the next one started
+            CompletableFuture.runAsync(() -> {
+            }, first).join();
+            order.clear();
+
+            // the new lane starts with the time used by the first lane, instead of
+            // running all its tasks before the first lane gets its turn
+            try (var second = executor.newLane()) {
+                var queued = hold(first);
+                submit(first, "f", 2, 10);
+                submit(second, "s", 2, 10);
+                queued.countDown();
+                awaitTasks();
+            }
+        }
+        assertEquals(sequence("fsfs"), order);
+    }
+}
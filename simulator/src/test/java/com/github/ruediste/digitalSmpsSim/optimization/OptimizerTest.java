@@ -0,0 +1,46 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.ruediste.digitalSmpsSim.Simulations;
+import com.github.ruediste.digitalSmpsSim.boost.BoostControlCot;
+
+public class OptimizerTest {
+
+    private List<double[][]> parents(boolean abortAboveThreshold) {
+        var scenarios = new Simulations().createCircuits().subList(0, 6);
+        var optimizer = new Optimizer();
+        optimizer.populationSize = 8;
+        optimizer.maxEvaluations = 48;
+        optimizer.threads = 2;
+        optimizer.abortAboveThreshold = abortAboveThreshold;
+        var result = new ArrayList<double[][]>();
+        optimizer.generationCompleted = cma -> {
+            result.add(cma.getParents());
+            result.add(new double[][] { cma.getBestPoint() });
+        };
+        var control = (BoostControlCot) scenarios.get(0).get().control;
+        optimizer.optimize(control.optimizationParameters(), scenarios);
+        return result;
+    }
+
+    /**
+     * The aborted candidates are above the selection threshold, so the budget
+     * does not change the parents and thus the search
+     */
+    @Test
+    public void budgetKeepsParents() {
+        var expected = parents(false);
+        var actual = parents(true);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            for (int k = 0; k < expected.get(i).length; k++)
+                assertArrayEquals(expected.get(i)[k], actual.get(i)[k]);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SurrogateSearchTest {
+
+    private double branin(double[] x) {
+        double a = x[1] - 5.1 / (4 * Math.PI * Math.PI) * x[0] * x[0] + 5 / Math.PI * x[0] - 6;
+        return a * a + 10 * (1 - 1 / (8 * Math.PI)) * Math.cos(x[0]) + 10;
+    }
+
+    @Test
+    public void minimizeBranin() {
+        var search = new SurrogateSearch(new double[] { 2.5, 7.5 }, new double[] { 3, 3 },
+                new double[] { -5, 0 }, new double[] { 10, 15 }, 6, 0);
+        while (search.getEvaluations() < 60) {
+            var points = search.ask(2);
+            var values = new double[points.length];
+            for (int i = 0; i < points.length; i++)
+                values[i] = branin(points[i]);
+            search.tell(points, values);
+        }
+        // global minimum is 0.397887
+        assertTrue(search.getBestValue() < 0.41, "best value: " + search.getBestValue());
+    }
+
+    @Test
+    public void gaussianProcessInterpolates() {
+        var x = new double[][] { { 0 }, { 1 }, { 2 }, { 3 } };
+        var y = new double[] { 0, 1, 4, 9 };
+        var gp = new GaussianProcess(x, y, new double[] { 1 }, 1e-8);
+        for (int i = 0; i < x.length; i++) {
+            var prediction = gp.predict(x[i]);
+            assertEquals(y[i], prediction[0], 1e-3);
+            assertEquals(0, prediction[1], 1e-3);
+        }
+        assertTrue(gp.predict(new double[] { 1.5 })[1] > 0);
+        assertArrayEquals(new double[] { 1 }, gp.lengthScales());
+    }
+}
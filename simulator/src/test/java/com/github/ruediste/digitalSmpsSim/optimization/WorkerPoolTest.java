@@ -0,0 +1,70 @@
+package com.github.ruediste.digitalSmpsSim.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.ruediste.digitalSmpsSim.Simulations;
+import com.github.ruediste.digitalSmpsSim.boost.BoostCircuit;
+
+public class WorkerPoolTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * The second scenario crashes the worker once, the third one always
+     */
+    public static class Source implements ScenarioSource {
+        @Override
+        public List<Supplier<BoostCircuit>> createCircuits() {
+            var scenario = new Simulations().createCircuits().get(0);
+            return List.of(scenario, () -> {
+                var marker = Path.of(System.getProperty("marker"));
+                if (!Files.exists(marker)) {
+                    try {
+                        Files.createFile(marker);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    Runtime.getRuntime().halt(1);
+                }
+                return scenario.get();
+            }, () -> {
+                Runtime.getRuntime().halt(1);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    public void recoverFromCrashes() throws Exception {
+        var scenario = new Source().createCircuits().get(0);
+        var parameters = scenario.get().control.optimizationParameters();
+        var names = parameters.stream().map(p -> p.name).toList();
+        var point = parameters.stream().mapToDouble(p -> p.initialGuess).toArray();
+        var optimizer = new Optimizer();
+        optimizer.skipSteadyState = true;
+        optimizer.stopAtSteadyState = true;
+        double expected = optimizer.cost(scenario, names, point);
+
+        try (var pool = new WorkerPool(1, Source.class, true, true, names,
+                List.of("-Dmarker=" + dir.resolve("marker")))) {
+            var first = pool.submit(0, point);
+            var crashingOnce = pool.submit(1, point);
+            var crashing = pool.submit(2, point);
+            assertEquals(expected, first.get());
+            assertEquals(expected, crashingOnce.get());
+            assertThrows(ExecutionException.class, () -> crashing.get());
+        }
+    }
+}
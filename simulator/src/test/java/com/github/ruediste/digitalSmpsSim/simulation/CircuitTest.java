@@ -0,0 +1,131 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CircuitTest {
+    private final Circuit circuit = new Circuit();
+    private final List<Integer> ran = new ArrayList<>();
+
+    /**
+     * Register actions recording their slot
+     */
+    private void register(int count) {
+        for (int i = 0; i < count; i++) {
+            int slot = i;
+            assertEquals(slot, circuit.registerDeferredAction(() -> ran.add(slot)));
+        }
+    }
+
+    @Test
+    public void atMost64Actions() {
+        register(64);
+        assertThrows(IllegalStateException.class, () -> circuit.registerDeferredAction(() -> {
+        }));
+
+        // the last slot uses the sign bit
+        circuit.withUpdatedValues(63);
+        circuit.withUpdatedValues(0);
+        circuit.runDeferredActions();
+        assertEquals(List.of(0, 63), ran);
+    }
+
+    @Test
+    public void scheduledTwiceRunsOnce() {
+        register(3);
+        circuit.withUpdatedValues(1);
+        circuit.withUpdatedValues(1);
+        circuit.runDeferredActions();
+        assertEquals(List.of(1), ran);
+
+        // nothing is left for the next step
+        circuit.runDeferredActions();
+        assertEquals(List.of(1), ran);
+    }
+
+    @Test
+    public void slotOrder() {
+        register(10);
+        circuit.withUpdatedValues(5);
+        circuit.withUpdatedValues(9);
+        circuit.withUpdatedValues(2);
+        circuit.runDeferredActions();
+        assertEquals(List.of(2, 5, 9), ran);
+    }
+
+    @Test
+    public void actionsScheduleActions() {
+        register(1);
+        int scheduling = circuit.registerDeferredAction(() -> {
+            ran.add(1);
+            circuit.withUpdatedValues(0);
+            circuit.withUpdatedValues(2);
+            circuit.withUpdatedValues(3);
+        });
+        assertEquals(1, scheduling);
+        int self = circuit.registerDeferredAction(() -> {
+            ran.add(2);
+            // rescheduling the running action runs it again
+            if (ran.stream().filter(x -> x == 2).count() == 1)
+                circuit.withUpdatedValues(2);
+        });
+        assertEquals(2, self);
+        circuit.registerDeferredAction(() -> ran.add(3));
+
+        circuit.withUpdatedValues(1);
+        circuit.withUpdatedValues(2);
+        circuit.runDeferredActions();
+        // the lower slot scheduled by action 1 runs before the already scheduled
+        // action 2, which is scheduled a second time by action 1 but runs once
+        // before rescheduling itself
+        assertEquals(List.of(1, 0, 2, 2, 3), ran);
+    }
+
+    /**
+     * Schedules the action twice in each step, changing the value
+     */
+    private static class Scheduling extends CircuitElement {
+        final DoubleSimulationValue value;
+        final int action;
+        final List<Double> seen = new ArrayList<>();
+        double nextTick;
+
+        Scheduling(Circuit circuit) {
+            super(circuit);
+            value = new DoubleSimulationValue(circuit, "value", 0);
+            action = circuit.registerDeferredAction(() -> seen.add(value.get()));
+        }
+
+        @Override
+        public void initialize() {
+            nextTick = 1e-6;
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public boolean isContinuous() {
+            return false;
+        }
+
+        @Override
+        public void run(double stepStart, double stepEnd, double stepDuration) {
+            value.set(value.get() + 1);
+            circuit.withUpdatedValues(action);
+            circuit.withUpdatedValues(action);
+            nextTick += 1e-6;
+            scheduleEvent(nextTick);
+        }
+    }
+
+    @Test
+    public void runAfterPropagation() {
+        var element = new Scheduling(circuit);
+        new Simulator().simulate(circuit, 3e-6);
+        assertEquals(List.of(1., 2., 3.), element.seen);
+    }
+}
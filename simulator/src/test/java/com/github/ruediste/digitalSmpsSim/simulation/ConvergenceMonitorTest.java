@@ -0,0 +1,140 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ConvergenceMonitorTest {
+    private static final double period = 1e-3;
+    private static final double finalTime = 2;
+
+    /**
+     * Relaxes a value towards a target at each tick, accumulating the value over
+     * time. The target steps from one to two at the given instant. The drift is
+     * controller state which never repeats if the drift rate is not zero.
+     */
+    private static class Relaxation extends CircuitElement {
+        final DoubleSimulationValue value;
+        double targetStep;
+        boolean reportStationary = true;
+        double total;
+        double drift;
+        double driftRate;
+        double nextTick;
+        int ticks;
+
+        Relaxation(Circuit circuit) {
+            super(circuit);
+            value = new DoubleSimulationValue(circuit, "value", 1);
+        }
+
+        @Override
+        public void initialize() {
+            nextTick = period;
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public boolean isContinuous() {
+            return false;
+        }
+
+        @Override
+        public double stationaryFrom() {
+            return reportStationary ? targetStep : 0;
+        }
+
+        @Override
+        public void run(double stepStart, double stepEnd, double stepDuration) {
+            if (stepEnd >= nextTick) {
+                double target = stepEnd < targetStep ? 1 : 2;
+                value.set(value.get() + 0.3 * (target - value.get()));
+                total += value.get() * period;
+                drift += driftRate;
+                ticks++;
+                nextTick += period;
+            }
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public void saveState(CircuitSnapshot.Writer out) {
+            out.writeInstant(nextTick);
+            out.writeAccumulator(total);
+            out.writeDouble(drift);
+        }
+
+        @Override
+        public void restoreState(CircuitSnapshot.Reader in, double instant) {
+            nextTick = in.readInstant();
+            total = in.readAccumulator();
+            drift = in.readDouble();
+            scheduleEvent(nextTick);
+        }
+    }
+
+    private final Simulator sim = new Simulator();
+
+    private Relaxation relaxation(double targetStep) {
+        var relaxation = new Relaxation(new Circuit());
+        relaxation.targetStep = targetStep;
+        return relaxation;
+    }
+
+    private ConvergenceMonitor monitor(Relaxation relaxation) {
+        return new ConvergenceMonitor(() -> relaxation.nextTick).track(() -> relaxation.drift);
+    }
+
+    @Test
+    public void convergesAfterStationaryFrom() {
+        var full = relaxation(0.5);
+        sim.simulate(full.circuit, finalTime);
+
+        var monitored = relaxation(0.5);
+        var monitor = monitor(monitored);
+        sim.simulate(monitored.circuit, finalTime, monitor);
+        assertTrue(monitor.isConverged());
+        assertTrue(monitor.windowsStart().getTime() >= 0.5, "start: " + monitor.windowsStart().getTime());
+        assertEquals(2 * monitor.periods * period, monitor.windowEnd().getTime() - monitor.windowsStart().getTime(),
+                1e-9);
+        assertEquals(period, monitor.period(), 1e-12);
+        assertTrue(monitored.ticks < full.ticks / 2, "ticks: " + monitored.ticks);
+
+        // the extrapolated accumulator matches the full run
+        assertEquals(full.total, monitored.total, monitor.tolerance * full.total);
+        assertEquals(full.value.get(), monitored.value.get(), monitor.tolerance);
+    }
+
+    @Test
+    public void stationaryFromPreventsEarlyConvergence() {
+        // without the stationary instant, the steady state before the step of the
+        // target is extrapolated, missing the step
+        var full = relaxation(0.5);
+        sim.simulate(full.circuit, finalTime);
+
+        var monitored = relaxation(0.5);
+        monitored.reportStationary = false;
+        var monitor = monitor(monitored);
+        sim.simulate(monitored.circuit, finalTime, monitor);
+        assertTrue(monitor.isConverged());
+        assertTrue(monitor.windowEnd().getTime() < 0.5);
+        assertTrue(Math.abs(full.total - monitored.total) > 0.1 * full.total);
+    }
+
+    @Test
+    public void windowsHaveToAgree() {
+        var full = relaxation(0.5);
+        full.driftRate = 1;
+        sim.simulate(full.circuit, finalTime);
+
+        var monitored = relaxation(0.5);
+        monitored.driftRate = 1;
+        var monitor = monitor(monitored);
+        sim.simulate(monitored.circuit, finalTime, monitor);
+        assertFalse(monitor.isConverged());
+        assertEquals(full.ticks, monitored.ticks);
+        assertEquals(full.total, monitored.total);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class DoubleStepChangingValueTest {
+    @Test
+    public void test() {
+        var value = new DoubleStepChangingValue();
+        value.set(1, 10);
+        value.set(0, 5);
+        value.set(3, 20);
+
+        assertThrows(IllegalStateException.class, () -> value.get(-1));
+        assertEquals(0, value.nextChangeTime(-1));
+
+        // forward
+        assertEquals(5, value.get(0));
+        assertEquals(1, value.nextChangeTime(0));
+        assertEquals(5, value.get(0.5));
+        assertEquals(10, value.get(1));
+        assertEquals(3, value.nextChangeTime(1));
+        assertEquals(20, value.get(4));
+        assertEquals(Double.POSITIVE_INFINITY, value.nextChangeTime(4));
+
+        // backward
+        assertEquals(10, value.get(2));
+        assertEquals(5, value.get(0));
+
+        // replace and insert
+        value.set(1, 11);
+        value.set(2, 15);
+        assertEquals(11, value.get(1.5));
+        assertEquals(15, value.get(2.5));
+        assertEquals(3, value.nextChangeTime(2));
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class EventQueueTest {
+    private final Circuit circuit = new Circuit();
+    private final EventQueue queue = circuit.events;
+
+    private CircuitElement element() {
+        return new CircuitElement(circuit) {
+        };
+    }
+
+    private List<CircuitElement> pollDue(double instant) {
+        var target = new CircuitElement[circuit.elements.size() * 2];
+        int count = queue.pollDue(instant, target, 0);
+        return Arrays.asList(target).subList(0, count);
+    }
+
+    /**
+     * Poll the events one by one, checking that they are returned in the order of
+     * their instants
+     */
+    private List<CircuitElement> pollAll(Map<CircuitElement, Double> times) {
+        var result = new ArrayList<CircuitElement>();
+        double last = Double.NEGATIVE_INFINITY;
+        while (queue.nextEventTime() < Double.POSITIVE_INFINITY) {
+            double time = queue.nextEventTime();
+            assertTrue(time >= last);
+            var due = pollDue(time);
+            for (var element : due)
+                assertEquals(time, times.get(element));
+            result.addAll(due);
+            last = time;
+        }
+        return result;
+    }
+
+    @Test
+    public void ordering() {
+        var random = new Random(0);
+        var times = new HashMap<CircuitElement, Double>();
+        for (int i = 0; i < 50; i++) {
+            var element = element();
+            double time = random.nextDouble();
+            times.put(element, time);
+            queue.schedule(element, time);
+        }
+        var sorted = times.values().stream().sorted().toList();
+        assertEquals(sorted.get(0), queue.nextEventTime());
+
+        assertEquals(25, pollDue(sorted.get(24)).size());
+        assertEquals(sorted.get(25), queue.nextEventTime());
+        assertEquals(25, pollAll(times).size());
+    }
+
+    @Test
+    public void pollInOrder() {
+        var a = element();
+        var b = element();
+        var c = element();
+        queue.schedule(b, 2);
+        queue.schedule(c, 3);
+        queue.schedule(a, 1);
+        assertEquals(List.of(a, b, c), pollDue(3));
+        assertEquals(Double.POSITIVE_INFINITY, a.scheduledEventTime());
+    }
+
+    @Test
+    public void rescheduleAndRemove() {
+        var random = new Random(0);
+        var elements = new ArrayList<CircuitElement>();
+        var times = new HashMap<CircuitElement, Double>();
+        for (int i = 0; i < 50; i++) {
+            var element = element();
+            elements.add(element);
+            double time = random.nextDouble();
+            times.put(element, time);
+            queue.schedule(element, time);
+        }
+        // move elements within the heap in both directions and remove some
+        for (int i = 0; i < 2000; i++) {
+            var element = elements.get(random.nextInt(elements.size()));
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                queue.cancel(element);
+                times.remove(element);
+            } else if (operation == 1) {
+                queue.schedule(element, Double.POSITIVE_INFINITY);
+                times.remove(element);
+            } else {
+                double time = random.nextDouble();
+                queue.schedule(element, time);
+                times.put(element, time);
+                assertEquals(time, element.scheduledEventTime());
+            }
+            assertEquals(times.values().stream().mapToDouble(x -> x).min().orElse(Double.POSITIVE_INFINITY),
+                    queue.nextEventTime());
+        }
+
+        var polled = pollAll(times);
+        assertEquals(times.size(), polled.size());
+        assertEquals(times.keySet(), Set.copyOf(polled));
+    }
+
+    @Test
+    public void removeMovesLastElementUp() {
+        // removing 12 moves the last element 5 from the right subtree below 11
+        var times = new HashMap<CircuitElement, Double>();
+        CircuitElement removed = null;
+        for (double time : new double[] { 1, 11, 2, 12, 13, 3, 4, 14, 15, 16, 17, 5 }) {
+            var element = element();
+            queue.schedule(element, time);
+            times.put(element, time);
+            if (time == 12)
+                removed = element;
+        }
+        queue.cancel(removed);
+        times.remove(removed);
+        assertEquals(List.of(1., 2., 3., 4., 5., 11., 13., 14., 15., 16., 17.), pollAll(times).stream().map(times::get).toList());
+    }
+
+    @Test
+    public void ties() {
+        var a = element();
+        var b = element();
+        var c = element();
+        queue.schedule(a, 1);
+        queue.schedule(b, 1);
+        queue.schedule(c, Math.nextUp(1.));
+        assertEquals(List.of(), pollDue(Math.nextDown(1.)));
+        assertEquals(Set.of(a, b), Set.copyOf(pollDue(1)));
+        assertEquals(List.of(c), pollDue(2));
+    }
+
+    @Test
+    public void runInNextStep() {
+        var a = element();
+        var b = element();
+        var c = element();
+
+        // requested twice, and due at the same time
+        queue.schedule(a, 1);
+        queue.runInNextStep(a);
+        queue.runInNextStep(a);
+        queue.runInNextStep(b);
+        assertEquals(List.of(a, b), sortByIndex(pollDue(1)));
+
+        // not due: runs anyway, and the event is kept
+        queue.schedule(c, 5);
+        queue.runInNextStep(c);
+        assertEquals(List.of(c), pollDue(2));
+        assertEquals(5, queue.nextEventTime());
+        assertEquals(List.of(c), pollDue(5));
+
+        // scheduling before the end of the current step runs the element in the
+        // next step and replaces the pending event
+        queue.advanceTo(6);
+        queue.schedule(a, 7);
+        queue.schedule(a, 6);
+        assertEquals(Double.POSITIVE_INFINITY, queue.nextEventTime());
+        assertEquals(List.of(a), pollDue(6));
+        assertEquals(List.of(), pollDue(10));
+    }
+
+    @Test
+    public void clear() {
+        var a = element();
+        var b = element();
+        queue.schedule(a, 1);
+        queue.runInNextStep(b);
+        queue.clear();
+        assertEquals(Double.POSITIVE_INFINITY, queue.nextEventTime());
+        assertEquals(List.of(), pollDue(10));
+        queue.runInNextStep(b);
+        assertEquals(List.of(b), pollDue(10));
+    }
+
+    private List<CircuitElement> sortByIndex(List<CircuitElement> elements) {
+        var result = new ArrayList<>(elements);
+        result.sort((x, y) -> Integer.compare(x.index, y.index));
+        return result;
+    }
+}
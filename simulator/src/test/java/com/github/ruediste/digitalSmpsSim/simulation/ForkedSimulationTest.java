@@ -0,0 +1,39 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.ruediste.digitalSmpsSim.Simulations;
+import com.github.ruediste.digitalSmpsSim.boost.BoostCircuit;
+
+public class ForkedSimulationTest {
+
+    /**
+     * The continuations of a fork group end in the same state as the circuits
+     * simulated on their own
+     */
+    @Test
+    public void forkedMatchesStandalone() {
+        var sim = new Simulator();
+        var suppliers = new Simulations().createCircuits();
+        var forked = suppliers.stream().map(Supplier::get).toList();
+        var group = sim.forkGroups(forked).stream().max(Comparator.comparingInt(List::size)).get();
+        assertTrue(group.size() > 1);
+
+        sim.simulateGroup(group, c -> c.control.simulationDuration(), false);
+
+        for (var circuit : group) {
+            BoostCircuit standalone = suppliers.get(forked.indexOf(circuit)).get();
+            sim.simulate(standalone, standalone.control.simulationDuration(), List.of());
+            assertEquals(standalone.costCalculator.totalCost, circuit.costCalculator.totalCost);
+            assertArrayEquals(standalone.state.snapshot(), circuit.state.snapshot());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class NoiseSourceTest {
+    @Test
+    public void independentOfDrawOrder() {
+        for (boolean tabulated : new boolean[] { false, true }) {
+            var noise = new NoiseSource(3, tabulated);
+            double later = noise.gaussian(1, 1000);
+            for (int i = 0; i < 1000; i++)
+                noise.gaussian(0, i);
+            assertEquals(later, new NoiseSource(3, tabulated).gaussian(1, 1000));
+            assertNotEquals(later, new NoiseSource(4, tabulated).gaussian(1, 1000));
+            assertNotEquals(later, noise.gaussian(0, 1000));
+        }
+    }
+
+    @Test
+    public void standardNormal() {
+        for (boolean tabulated : new boolean[] { false, true }) {
+            var noise = new NoiseSource(0, tabulated);
+            int n = 100_000;
+            double sum = 0;
+            double sumSq = 0;
+            for (int i = 0; i < n; i++) {
+                double x = noise.gaussian(i % 2, i / 2);
+                sum += x;
+                sumSq += x * x;
+            }
+            assertEquals(0, sum / n, 0.02);
+            assertEquals(1, sumSq / n, 0.02);
+        }
+    }
+}
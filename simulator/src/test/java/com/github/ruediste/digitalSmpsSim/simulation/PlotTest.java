@@ -0,0 +1,188 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.ruediste.digitalSmpsSim.quantity.Unit;
+
+public class PlotTest {
+    private static final double finalTime = 1;
+    private static final int steps = 240;
+
+    private double value;
+
+    private static double value(int step) {
+        return Math.sin(37. * step / steps) + step % 5;
+    }
+
+    private Plot plot() {
+        var plot = new Plot(new Circuit(), "test").resolution(10).levelCount(4);
+        plot.add("value", Unit.Volt, () -> value);
+        value = value(0);
+        plot.begin(finalTime);
+        return plot;
+    }
+
+    /**
+     * Run the steps in the given range, the value changing with each step
+     */
+    private void run(Plot plot, int from, int to) {
+        for (int step = from; step < to; step++) {
+            value = value(step + 1);
+            plot.stepCompleted((step + 1) / (double) steps, 1. / steps);
+        }
+    }
+
+    @Test
+    public void pyramid() {
+        var plot = plot();
+        run(plot, 0, steps);
+        plot.finish();
+
+        assertEquals(4, plot.levels.size());
+        for (int i = 0; i < plot.levels.size(); i++) {
+            var level = plot.levels.get(i);
+            assertEquals(finalTime / 80 * (1 << i), level.period, 1e-15);
+            // every level covers the whole simulation, including the tail
+            assertEquals(finalTime, level.times[level.size - 1], 1e-12);
+            double duration = 0;
+            for (int p = 0; p < level.size; p++)
+                duration += level.durations[p];
+            assertEquals(finalTime, duration, 1e-12);
+        }
+
+        // the finest level aggregates the steps since the previous point
+        var finest = plot.levels.get(0);
+        int step = 0;
+        for (int p = 1; p < finest.size; p++) {
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            while (step < steps && (step + 1) / (double) steps <= finest.times[p]) {
+                step++;
+                sum += value(step) / steps;
+                min = Math.min(min, value(step));
+                max = Math.max(max, value(step));
+            }
+            assertEquals(sum / finest.durations[p], finest.mean[0][p], 1e-12);
+            assertEquals(min, finest.min[0][p]);
+            assertEquals(max, finest.max[0][p]);
+        }
+        assertEquals(steps, step);
+
+        // each coarser point aggregates the finer points since its previous point
+        for (int i = 1; i < plot.levels.size(); i++) {
+            var finer = plot.levels.get(i - 1);
+            var level = plot.levels.get(i);
+            int f = 1;
+            for (int p = 1; p < level.size; p++) {
+                double duration = 0;
+                double sum = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (; f < finer.size && finer.times[f] <= level.times[p]; f++) {
+                    duration += finer.durations[f];
+                    sum += finer.mean[0][f] * finer.durations[f];
+                    min = Math.min(min, finer.min[0][f]);
+                    max = Math.max(max, finer.max[0][f]);
+                }
+                assertEquals(duration, level.durations[p], 1e-12);
+                assertEquals(sum / duration, level.mean[0][p], 1e-12);
+                assertEquals(min, level.min[0][p]);
+                assertEquals(max, level.max[0][p]);
+            }
+            assertEquals(finer.size, f);
+        }
+    }
+
+    /**
+     * The pending points are flushed through all levels, also if the simulation
+     * ends within the points of the coarser levels
+     */
+    @Test
+    public void finishCoversTail() {
+        for (int end = 200; end <= steps; end++) {
+            var plot = plot();
+            run(plot, 0, end);
+            plot.finish();
+            for (var level : plot.levels) {
+                assertEquals(end / (double) steps, level.times[level.size - 1], 1e-12, "end " + end);
+                double duration = 0;
+                for (int p = 0; p < level.size; p++)
+                    duration += level.durations[p];
+                assertEquals(end / (double) steps, duration, 1e-12, "end " + end);
+            }
+        }
+    }
+
+    /**
+     * Steps of random duration, some longer than the periods of the levels
+     */
+    @Test
+    public void finishCoversTailIrregularSteps() {
+        var random = new Random(0);
+        for (int run = 0; run < 200; run++) {
+            var plot = plot();
+            double time = 0;
+            double end = 0.5 + 0.5 * random.nextDouble();
+            while (time < end) {
+                double duration = Math.min(end - time, random.nextDouble() < 0.1 ? random.nextDouble() * 0.1
+                        : random.nextDouble() * 0.005);
+                time += duration;
+                value = random.nextDouble();
+                plot.stepCompleted(time, duration);
+            }
+            plot.finish();
+            for (var level : plot.levels) {
+                assertEquals(time, level.times[level.size - 1], 1e-12, "run " + run);
+                double duration = 0;
+                for (int p = 0; p < level.size; p++)
+                    duration += level.durations[p];
+                assertEquals(time, duration, 1e-12, "run " + run);
+            }
+        }
+    }
+
+    @Test
+    public void levelSelection() {
+        var plot = plot();
+        assertSame(plot.levels.get(3), plot.level(0, finalTime * 1.1));
+        assertSame(plot.levels.get(2), plot.level(0.2, 0.2 + finalTime * 0.6));
+        assertSame(plot.levels.get(1), plot.level(0, finalTime * 0.3));
+        assertSame(plot.levels.get(0), plot.level(0, finalTime * 0.1));
+        assertSame(plot.levels.get(0), plot.level(0, finalTime * 0.01));
+    }
+
+    @Test
+    public void saveAndRestore() {
+        var expected = plot();
+        run(expected, 0, steps);
+        expected.finish();
+
+        var first = plot();
+        run(first, 0, 101);
+        var snapshot = new CircuitSnapshot(101. / steps, 101, new double[0]);
+        first.saveState(snapshot.writer());
+        run(first, 101, 150);
+
+        var restored = plot();
+        restored.restoreState(snapshot.reader());
+        run(restored, 101, steps);
+        restored.finish();
+
+        for (int i = 0; i < expected.levels.size(); i++) {
+            var e = expected.levels.get(i);
+            var r = restored.levels.get(i);
+            assertArrayEquals(e.times, r.times);
+            assertArrayEquals(e.durations, r.durations);
+            assertArrayEquals(e.mean[0], r.mean[0]);
+            assertArrayEquals(e.min[0], r.min[0]);
+            assertArrayEquals(e.max[0], r.max[0]);
+        }
+    }
+}
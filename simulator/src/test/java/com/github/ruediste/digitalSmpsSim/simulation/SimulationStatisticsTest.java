@@ -0,0 +1,133 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SimulationStatisticsTest {
+
+    /**
+     * Runs every microsecond
+     */
+    private static class Ticker extends CircuitElement {
+        double nextTick;
+
+        Ticker(Circuit circuit) {
+            super(circuit);
+        }
+
+        @Override
+        public void initialize() {
+            nextTick = 1e-6;
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public boolean isContinuous() {
+            return false;
+        }
+
+        @Override
+        public void run(double stepStart, double stepEnd, double stepDuration) {
+            nextTick += 1e-6;
+            scheduleEvent(nextTick);
+        }
+    }
+
+    @Test
+    public void histogram() {
+        var stats = new SimulationStatistics();
+        for (double duration : new double[] { 0, 1e-20, 3e-15, 3e-12, 5e-12, 0.2, 3, 100 })
+            stats.stepCompleted(duration);
+
+        var expected = new long[16];
+        // zero and shorter than 1e-15 are clamped into the first bucket
+        expected[0] = 3;
+        expected[3] = 2;
+        expected[14] = 1;
+        // the last bucket starts at 1s and contains the longer steps as well
+        expected[15] = 2;
+        assertArrayEquals(expected, stats.stepDurationHistogram);
+        assertEquals(8, stats.steps);
+    }
+
+    @Test
+    public void tinySteps() {
+        var stats = new SimulationStatistics();
+        for (double duration : new double[] { 1e-10, 1e-10, 1e-6, 1e-10, 1e-10, 1e-10, 1e-6, 1e-10 })
+            stats.stepCompleted(duration);
+        assertEquals(6, stats.tinySteps);
+        assertEquals(3, stats.maxConsecutiveTinySteps);
+        assertEquals(1, stats.warnings().size());
+
+        var fewer = new SimulationStatistics();
+        for (double duration : new double[] { 1e-10, 1e-10, 1e-6, 1e-10, 1e-10 })
+            fewer.stepCompleted(duration);
+        assertEquals(4, fewer.tinySteps);
+        assertEquals(2, fewer.maxConsecutiveTinySteps);
+        assertEquals(List.of(), fewer.warnings());
+    }
+
+    @Test
+    public void add() {
+        var circuit = new Circuit();
+        new Ticker(circuit);
+        new Ticker(circuit);
+        var first = new SimulationStatistics(circuit);
+        first.stepCompleted(1e-10);
+        first.stepCompleted(1e-10);
+        first.stepCompleted(1e-6);
+        first.byIndex[0].runs = 2;
+        first.byIndex[1].stepEnds = 3;
+        var second = new SimulationStatistics(circuit);
+        second.stepCompleted(1e-10);
+        second.stepCompleted(1e-6);
+        second.byIndex[0].runs = 5;
+        second.delayedFirstEvents = 1;
+
+        var total = new SimulationStatistics();
+        total.add(first);
+        total.add(second);
+        assertEquals(2, total.simulations);
+        assertEquals(5, total.steps);
+        assertEquals(3, total.stepDurationHistogram[5]);
+        assertEquals(2, total.stepDurationHistogram[9]);
+        assertEquals(3, total.tinySteps);
+        // the longest run of a single simulation, not the sum
+        assertEquals(2, total.maxConsecutiveTinySteps);
+        assertEquals(1, total.delayedFirstEvents);
+
+        // elements of circuits with the same structure are merged by name
+        assertEquals(2, total.elements.size());
+        var stats = total.elements.values().stream().toList();
+        assertEquals(7, stats.get(0).runs);
+        assertEquals(3, stats.get(1).stepEnds);
+    }
+
+    @Test
+    public void collectedBySimulator() {
+        var sim = new Simulator();
+        sim.collectStatistics = true;
+        for (int i = 0; i < 2; i++) {
+            var circuit = new Circuit();
+            new Ticker(circuit);
+            sim.simulate(circuit, 10e-6);
+
+            var stats = circuit.statistics;
+            // the forced first step at 1e-10s and one step per tick
+            assertEquals(11, stats.steps);
+            assertEquals(1, stats.tinySteps);
+            assertEquals(10, stats.byIndex[0].runs);
+            assertEquals(10, stats.byIndex[0].stepEnds);
+        }
+        assertEquals(2, sim.statistics.simulations);
+        assertEquals(22, sim.statistics.steps);
+        assertEquals(1, sim.statistics.elements.size());
+        assertEquals(20, sim.statistics.elements.values().iterator().next().runs);
+        assertTrue(sim.statistics.toString().contains("22 steps"));
+    }
+}
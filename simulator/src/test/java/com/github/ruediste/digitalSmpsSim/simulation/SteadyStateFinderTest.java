@@ -0,0 +1,164 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import org.junit.jupiter.api.Test;
+
+public class SteadyStateFinderTest {
+    private static final double period = 1e-3;
+    private static final double forkTime = 1.0005;
+    private static final double finalTime = 1.2;
+
+    /**
+     * Relaxes a value towards one at each tick, accumulating the value over time.
+     * The target is disturbed by noise. The drift is controller state outside of
+     * the circuit state, which never repeats if the drift rate is not zero.
+     */
+    private static class Relaxation extends CircuitElement {
+        final DoubleSimulationValue value;
+        double total;
+        double drift;
+        double driftRate;
+        double noise;
+        double nextTick;
+
+        /**
+         * Number of simulated ticks, not part of the state
+         */
+        int ticks;
+
+        Relaxation(Circuit circuit) {
+            super(circuit);
+            value = new DoubleSimulationValue(circuit, "value", 0);
+        }
+
+        @Override
+        public void initialize() {
+            nextTick = period;
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public boolean isContinuous() {
+            return false;
+        }
+
+        @Override
+        public void run(double stepStart, double stepEnd, double stepDuration) {
+            if (stepEnd >= nextTick) {
+                double target = 1 + noise * new NoiseSource(0).gaussian(0, Math.round(nextTick / period));
+                value.set(value.get() + 0.3 * (target - value.get()));
+                total += value.get() * period;
+                drift += driftRate;
+                ticks++;
+                nextTick += period;
+            }
+            scheduleEvent(nextTick);
+        }
+
+        @Override
+        public void saveState(CircuitSnapshot.Writer out) {
+            out.writeInstant(nextTick);
+            out.writeAccumulator(total);
+            out.writeDouble(drift);
+        }
+
+        @Override
+        public void restoreState(CircuitSnapshot.Reader in, double instant) {
+            nextTick = in.readInstant();
+            total = in.readAccumulator();
+            drift = in.readDouble();
+            scheduleEvent(nextTick);
+        }
+    }
+
+    private final Simulator sim = new Simulator();
+
+    private Relaxation relaxation(double driftRate) {
+        return relaxation(driftRate, 0);
+    }
+
+    private Relaxation relaxation(double driftRate, double noise) {
+        var relaxation = new Relaxation(new Circuit());
+        relaxation.driftRate = driftRate;
+        relaxation.noise = noise;
+        return relaxation;
+    }
+
+    private CircuitSnapshot findPrefix(Relaxation relaxation, List<DoubleSupplier> tracked) {
+        return new SteadyStateFinder(sim).simulatePrefix(relaxation.circuit, finalTime, forkTime,
+                () -> relaxation.nextTick, tracked);
+    }
+
+    /**
+     * Continue a fresh circuit from the snapshot up to the final time
+     */
+    private Relaxation complete(CircuitSnapshot snapshot, double noise) {
+        var relaxation = relaxation(0, noise);
+        sim.simulateFrom(relaxation.circuit, finalTime, List.of(), snapshot);
+        return relaxation;
+    }
+
+    @Test
+    public void extrapolatesSteadyState() {
+        var full = relaxation(0);
+        var fullPrefix = sim.simulatePrefix(full.circuit, finalTime, forkTime);
+        int periodsBeforeFork = full.ticks;
+
+        var shooting = relaxation(0);
+        var prefix = findPrefix(shooting, List.of());
+        assertTrue(shooting.ticks < periodsBeforeFork / 10, "ticks: " + shooting.ticks);
+        assertEquals(fullPrefix.getTime(), prefix.getTime(), 1e-9);
+
+        // the phase of the ticks is shifted by the skipped periods, and the
+        // accumulator grows by the skipped periods. The steady state is detected
+        // within the tolerance of the finder.
+        var expected = complete(fullPrefix, 0);
+        var actual = complete(prefix, 0);
+        double tolerance = new SteadyStateFinder(sim).tolerance;
+        assertEquals(expected.nextTick, actual.nextTick, 1e-9);
+        assertEquals(expected.total, actual.total, tolerance * expected.total);
+        assertEquals(expected.value.get(), actual.value.get(), tolerance);
+    }
+
+    /**
+     * The window averages of a noisy state differ by more than the tolerance, but
+     * less than the allowed standard errors
+     */
+    @Test
+    public void toleratesNoise() {
+        double noise = 0.1;
+        var full = relaxation(0, noise);
+        var fullPrefix = sim.simulatePrefix(full.circuit, finalTime, forkTime);
+
+        var shooting = relaxation(0, noise);
+        var prefix = findPrefix(shooting, List.of());
+        assertTrue(shooting.ticks < full.ticks / 10, "ticks: " + shooting.ticks);
+
+        var expected = complete(fullPrefix, noise);
+        var actual = complete(prefix, noise);
+        assertEquals(expected.nextTick, actual.nextTick, 1e-9);
+        assertEquals(expected.total, actual.total, noise * expected.total);
+    }
+
+    @Test
+    public void refusesDriftingTrackedValue() {
+        // not tracked: the drift is ignored and the prefix is extrapolated
+        var untracked = relaxation(1);
+        findPrefix(untracked, List.of());
+        var full = relaxation(1);
+        var fullPrefix = sim.simulatePrefix(full.circuit, finalTime, forkTime);
+        assertTrue(untracked.ticks < full.ticks);
+
+        // tracked: no steady state, the whole prefix is simulated
+        var tracked = relaxation(1);
+        var prefix = findPrefix(tracked, List.of(() -> tracked.drift));
+        assertEquals(full.ticks, tracked.ticks);
+        assertEquals(fullPrefix.getTime(), prefix.getTime());
+        assertEquals(full.drift, tracked.drift);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class SweepExecutorTest {
+
+    @Test
+    public void boundsInFlightTasks() {
+        var executor = new SweepExecutor();
+        executor.parallelism = 4;
+        executor.maxInFlight = 3;
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var results = ConcurrentHashMap.<Integer>newKeySet();
+        executor.run(IntStream.range(0, 50).<Supplier<Integer>>mapToObj(i -> () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            return i;
+        }).toList(), results::add);
+        assertEquals(50, results.size());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void completesOtherTasksOnFailure() {
+        var completed = new AtomicInteger();
+        List<Supplier<Integer>> tasks = List.of(() -> 1, () -> {
+            throw new IllegalStateException("failed");
+        }, () -> 3);
+        var e = assertThrows(RuntimeException.class,
+                () -> new SweepExecutor().run(tasks, x -> completed.incrementAndGet()));
+        assertEquals("failed", e.getCause().getMessage());
+        assertEquals(2, completed.get());
+    }
+}
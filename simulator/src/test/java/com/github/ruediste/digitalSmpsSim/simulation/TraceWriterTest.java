@@ -0,0 +1,43 @@
+package com.github.ruediste.digitalSmpsSim.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TraceWriterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writeAndRead() {
+        var circuit = new Circuit();
+        var voltage = new DoubleSimulationValue(circuit, "voltage", 1);
+        var on = new BooleanSimulationValue(circuit, false);
+
+        var file = dir.resolve("test.trace");
+        try (var writer = new TraceWriter(file)) {
+            writer.start(circuit.state);
+            for (int i = 0; i < 100; i++) {
+                voltage.set(i * 0.5);
+                on.set(i % 2 == 0);
+                circuit.propagateValues();
+                writer.append(i * 1e-6, circuit.state);
+            }
+        }
+
+        try (var reader = new TraceReader(file)) {
+            assertEquals(List.of("voltage", "value1"), reader.names());
+            assertEquals(100, reader.size());
+            assertEquals(10 * 1e-6, reader.time(10));
+            assertEquals(5, reader.value(10, 0));
+            assertEquals(1, reader.value(10, 1));
+            assertEquals(11, reader.indexOf(10.5e-6));
+            assertEquals(0, reader.indexOf(-1));
+            assertEquals(100, reader.indexOf(1));
+        }
+    }
+}